@@ -90,7 +90,14 @@ public abstract class Util {
             return name.apply();
         }
         
-        public SERIAL apply(FORMAT format, OWNER owner) {
+        public Serializer<FORMAT, ? super T, SERIAL> getSerializer() {
+            return serializer;
+        }
+        
+        /**
+         * The (non-null) value of this field in the given owner
+         */
+        public T get(OWNER owner) {
             if (owner == null) {
                 throw new NullPointerException("owner was null");
             }
@@ -98,7 +105,11 @@ public abstract class Util {
             if (target == null) {
                 throw new NullPointerException("target: " + getter + " for owner: " + owner + " was null");
             }
-            return serializer.serialize(format, target);
+            return target;
+        }
+        
+        public SERIAL apply(FORMAT format, OWNER owner) {
+            return serializer.serialize(format, get(owner));
         }
     }
     
@@ -117,6 +128,11 @@ public abstract class Util {
         public String getName() {
             return name.apply();
         }
+        
+        @SuppressWarnings("unchecked")
+        public Deserializer<FORMAT, T, SERIAL> getDeserializer() {
+            return (Deserializer<FORMAT, T, SERIAL>)deserializer;
+        }
 
         @SuppressWarnings("unchecked")
         public Either<Failure<T>,T> apply(FORMAT format, SERIAL serial) {
@@ -0,0 +1,448 @@
+package fi.solita.utils.serialization.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import fi.solita.utils.serialization.json.GenerateJSONSD;
+
+/**
+ * Generates a straight-line {@link fi.solita.utils.serialization.json.JSONSD} for each class
+ * annotated with {@link GenerateJSONSD}: members are written and read directly from fields
+ * and to the constructor, with no tuples, field lists or maps in between.
+ *
+ * For a class {@code Dto} this generates {@code DtoJSONSD} in the same package, with a method
+ * {@code of} taking an SD for each member, and another one taking only those without a default.
+ */
+@SupportedAnnotationTypes("fi.solita.utils.serialization.json.GenerateJSONSD")
+public class JSONSDProcessor extends AbstractProcessor {
+
+    private static final Map<String,String> DEFAULTS = new HashMap<String,String>();
+    static {
+        DEFAULTS.put(String.class.getName(), "JSONSD.string");
+        DEFAULTS.put(Boolean.class.getName(), "JSONSD.bool");
+        DEFAULTS.put(Integer.class.getName(), "JSONSD.integer");
+        DEFAULTS.put(Long.class.getName(), "JSONSD.lng");
+        DEFAULTS.put(Short.class.getName(), "JSONSD.shrt");
+        DEFAULTS.put(Float.class.getName(), "JSONSD.flt");
+        DEFAULTS.put(Double.class.getName(), "JSONSD.dbl");
+        DEFAULTS.put(Byte.class.getName(), "JSONSD.byt");
+        DEFAULTS.put(BigInteger.class.getName(), "JSONSD.bigint");
+        DEFAULTS.put(BigDecimal.class.getName(), "JSONSD.bigdecimal");
+    }
+
+    private static final Map<TypeKind,String> PRIMITIVE_SERIALIZERS = new HashMap<TypeKind,String>();
+    static {
+        PRIMITIVE_SERIALIZERS.put(TypeKind.BOOLEAN, "BooleanSerializer");
+        PRIMITIVE_SERIALIZERS.put(TypeKind.INT, "IntSerializer");
+        PRIMITIVE_SERIALIZERS.put(TypeKind.LONG, "LongSerializer");
+        PRIMITIVE_SERIALIZERS.put(TypeKind.DOUBLE, "DoubleSerializer");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element: roundEnv.getElementsAnnotatedWith(GenerateJSONSD.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error("@GenerateJSONSD is only applicable to classes", element);
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                Dto dto = analyze(type);
+                if (dto != null) {
+                    write(dto);
+                }
+            } catch (IOException e) {
+                error("Could not write generated source: " + e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    private void error(String message, Element element) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, message, element);
+    }
+
+    private static final class Member {
+        final String name;
+        final String boxedType;
+        final boolean primitive;
+        final String accessor;
+        final String defaultSD;
+        /**
+         * Serializer writing the primitive value without boxing, or null.
+         */
+        final String primitiveSerializer;
+
+        Member(String name, String boxedType, boolean primitive, String accessor, String defaultSD, String primitiveSerializer) {
+            this.name = name;
+            this.boxedType = boxedType;
+            this.primitive = primitive;
+            this.accessor = accessor;
+            this.defaultSD = defaultSD;
+            this.primitiveSerializer = primitiveSerializer;
+        }
+
+        String sd() {
+            return name + "SD";
+        }
+
+        String writer() {
+            return name + "Writer";
+        }
+
+        String reader() {
+            return name + "Reader";
+        }
+
+        String value() {
+            return name + "Value";
+        }
+
+        String sdType() {
+            return "SD<JSON," + boxedType + ",JSONStr>";
+        }
+
+        String eitherType() {
+            return "Either<Failure<" + boxedType + ">," + boxedType + ">";
+        }
+    }
+
+    private static final class Dto {
+        final TypeElement element;
+        final String packageName;
+        final String generatedName;
+        final String typeParameters;
+        final String type;
+        final List<Member> members;
+
+        Dto(TypeElement element, String packageName, String generatedName, String typeParameters, String type, List<Member> members) {
+            this.element = element;
+            this.packageName = packageName;
+            this.generatedName = generatedName;
+            this.typeParameters = typeParameters;
+            this.type = type;
+            this.members = members;
+        }
+    }
+
+    private Dto analyze(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error("@GenerateJSONSD class must not be abstract", type);
+            return null;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            error("@GenerateJSONSD class must be top-level or static", type);
+            return null;
+        }
+
+        ExecutableElement constructor = null;
+        for (ExecutableElement c: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!c.getModifiers().contains(Modifier.PRIVATE) && (constructor == null || c.getParameters().size() > constructor.getParameters().size())) {
+                constructor = c;
+            }
+        }
+        if (constructor == null) {
+            error("@GenerateJSONSD class needs a non-private constructor", type);
+            return null;
+        }
+
+        List<Member> members = new ArrayList<Member>();
+        for (VariableElement param: constructor.getParameters()) {
+            String name = param.getSimpleName().toString();
+            String accessor = accessor(type, name);
+            if (accessor == null) {
+                error("No non-private field or getter for constructor parameter '" + name + "'", param);
+                return null;
+            }
+            TypeMirror paramType = param.asType();
+            boolean primitive = paramType.getKind().isPrimitive();
+            String boxedType = primitive
+                ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) paramType).getQualifiedName().toString()
+                : paramType.toString();
+            members.add(new Member(name, boxedType, primitive, accessor, DEFAULTS.get(boxedType), PRIMITIVE_SERIALIZERS.get(paramType.getKind())));
+        }
+
+        List<String> params = new ArrayList<String>();
+        List<String> args = new ArrayList<String>();
+        for (TypeParameterElement p: type.getTypeParameters()) {
+            StringBuilder sb = new StringBuilder(p.getSimpleName());
+            List<String> bounds = new ArrayList<String>();
+            for (TypeMirror bound: p.getBounds()) {
+                if (!bound.toString().equals(Object.class.getName())) {
+                    bounds.add(bound.toString());
+                }
+            }
+            if (!bounds.isEmpty()) {
+                sb.append(" extends ").append(join(bounds, " & "));
+            }
+            params.add(sb.toString());
+            args.add(p.getSimpleName().toString());
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String generatedName = "";
+        for (Element e = type; !(e instanceof PackageElement); e = e.getEnclosingElement()) {
+            generatedName = e.getSimpleName() + (generatedName.isEmpty() ? "" : "_") + generatedName;
+        }
+        generatedName += "JSONSD";
+        String typeName = type.getQualifiedName() + (args.isEmpty() ? "" : "<" + join(args, ",") + ">");
+        return new Dto(type, packageName, generatedName, params.isEmpty() ? "" : "<" + join(params, ",") + "> ", typeName, members);
+    }
+
+    /**
+     * @return an expression reading the given member from {@code object}, or null if there's none.
+     */
+    private String accessor(TypeElement type, String name) {
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (VariableElement field: ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (field.getSimpleName().contentEquals(name) && accessible(field)) {
+                    return "object." + name;
+                }
+            }
+            for (ExecutableElement method: ElementFilter.methodsIn(t.getEnclosedElements())) {
+                String methodName = method.getSimpleName().toString();
+                if ((methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized)) && method.getParameters().isEmpty() && accessible(method)) {
+                    return "object." + methodName + "()";
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean accessible(Element member) {
+        return !member.getModifiers().contains(Modifier.PRIVATE) && !member.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass) : null;
+    }
+
+    private static String join(List<String> parts, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (String part: parts) {
+            if (sb.length() > 0) {
+                sb.append(separator);
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private void write(Dto dto) throws IOException {
+        String qualifiedName = dto.packageName.isEmpty() ? dto.generatedName : dto.packageName + "." + dto.generatedName;
+        Writer w = processingEnv.getFiler().createSourceFile(qualifiedName, dto.element).openWriter();
+        try {
+            w.write(generate(dto));
+        } finally {
+            w.close();
+        }
+    }
+
+    private String generate(Dto dto) {
+        String T = dto.type;
+        List<Member> members = dto.members;
+        StringBuilder sb = new StringBuilder();
+        if (!dto.packageName.isEmpty()) {
+            sb.append("package ").append(dto.packageName).append(";\n\n");
+        }
+        sb.append("import java.io.IOException;\n");
+        sb.append("import java.util.ArrayList;\n");
+        sb.append("import java.util.List;\n\n");
+        sb.append("import fi.solita.utils.functional.Either;\n");
+        sb.append("import fi.solita.utils.serialization.Deserializer.Failure;\n");
+        sb.append("import fi.solita.utils.serialization.SD;\n");
+        sb.append("import fi.solita.utils.serialization.json.GeneratedSupport;\n");
+        for (String primitiveSerializer: new TreeSet<String>(PRIMITIVE_SERIALIZERS.values())) {
+            for (Member m: dto.members) {
+                if (primitiveSerializer.equals(m.primitiveSerializer)) {
+                    sb.append("import fi.solita.utils.serialization.json.").append(primitiveSerializer).append(";\n");
+                    break;
+                }
+            }
+        }
+        sb.append("import fi.solita.utils.serialization.json.JSON;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONNames;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONReader;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONReadingDeserializer;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONSD;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONStr;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONWriter;\n");
+        sb.append("import fi.solita.utils.serialization.json.JSONWritingSerializer;\n\n");
+
+        sb.append("/**\n * Generated from {@link ").append(dto.element.getQualifiedName()).append("} by ").append(getClass().getName()).append(".\n */\n");
+        sb.append("public final class ").append(dto.generatedName).append(" {\n");
+        List<String> names = new ArrayList<String>();
+        for (Member m: dto.members) {
+            names.add("\"" + m.name + "\"");
+        }
+        sb.append("    private static final JSONNames NAMES = new JSONNames(").append(join(names, ", ")).append(");\n\n");
+        sb.append("    private ").append(dto.generatedName).append("() {\n    }\n\n");
+
+        List<String> required = new ArrayList<String>();
+        List<String> args = new ArrayList<String>();
+        List<String> allParams = new ArrayList<String>();
+        for (Member m: members) {
+            allParams.add("final " + m.sdType() + " " + m.sd());
+            if (m.defaultSD == null) {
+                required.add(m.sdType() + " " + m.sd());
+                args.add(m.sd());
+            } else {
+                args.add(m.defaultSD);
+            }
+        }
+        if (required.size() < members.size()) {
+            sb.append("    public static final ").append(dto.typeParameters).append("JSONSD<").append(T).append("> of(").append(join(required, ", ")).append(") {\n");
+            sb.append("        return of(").append(join(args, ", ")).append(");\n");
+            sb.append("    }\n\n");
+        }
+
+        sb.append("    public static final ").append(dto.typeParameters).append("JSONSD<").append(T).append("> of(").append(join(allParams, ", ")).append(") {\n");
+        for (Member m: members) {
+            if (m.primitiveSerializer != null) {
+                sb.append("        final ").append(m.primitiveSerializer).append(" ").append(m.writer()).append(" = ").append(m.primitiveSerializer).append(".primitive(").append(m.sd()).append(");\n");
+            }
+        }
+        for (Member m: members) {
+            sb.append("        final JSONReadingDeserializer<").append(m.boxedType).append("> ").append(m.reader()).append(" = JSONReadingDeserializer.of(").append(m.sd()).append(");\n");
+        }
+        sb.append("        return new JSONSD<").append(T).append(">(new JSONWritingSerializer<").append(T).append(">() {\n");
+        sb.append("            @Override\n");
+        sb.append("            public void write(JSONWriter out, ").append(T).append(" object) throws IOException {\n");
+        sb.append("                GeneratedSupport.checkOwner(object);\n");
+        sb.append("                out.beginObject();\n");
+        for (int i = 0; i < members.size(); ++i) {
+            Member m = members.get(i);
+            sb.append("                out.name(NAMES, ").append(i).append(");\n");
+            if (m.primitiveSerializer != null) {
+                sb.append("                ").append(m.writer()).append(".write(out, ").append(m.accessor).append(");\n");
+            } else if (m.primitive) {
+                sb.append("                out.value(").append(m.sd()).append(", ").append(m.accessor).append(");\n");
+            } else {
+                sb.append("                out.value(").append(m.sd()).append(", GeneratedSupport.get(object, ").append(m.accessor).append(", \"").append(m.name).append("\"));\n");
+            }
+        }
+        sb.append("                out.endObject();\n");
+        sb.append("            }\n\n");
+        sb.append("            @Override\n");
+        sb.append("            public String toString() {\n");
+        sb.append("                return \"").append(dto.generatedName).append("\";\n");
+        sb.append("            }\n");
+        sb.append("        }, new JSONReadingDeserializer<").append(T).append(">() {\n");
+
+        sb.append("            @Override\n");
+        sb.append("            public Either<Failure<").append(T).append(">,").append(T).append("> deserialize(JSON format, JSONStr json) {\n");
+        sb.append("                JSONStr[] values = GeneratedSupport.members(format, json, NAMES);\n");
+        sb.append("                if (values == null) {\n");
+        sb.append("                    return GeneratedSupport.notAnObject(json);\n");
+        sb.append("                }\n");
+        List<String> members1 = new ArrayList<String>();
+        for (int i = 0; i < members.size(); ++i) {
+            Member m = members.get(i);
+            members1.add("\n                    GeneratedSupport.member(format, values, " + i + ", \"" + m.name + "\", json, " + m.sd() + ")");
+        }
+        sb.append("                return result(").append(join(members1, ",")).append(");\n");
+        sb.append("            }\n\n");
+
+        sb.append("            @Override\n");
+        sb.append("            public Either<Failure<").append(T).append(">,").append(T).append("> read(JSONReader in) {\n");
+        sb.append("                if (in.peek() != JSONReader.Token.BEGIN_OBJECT) {\n");
+        sb.append("                    return GeneratedSupport.notAnObject(in);\n");
+        sb.append("                }\n");
+        for (Member m: members) {
+            sb.append("                ").append(m.eitherType()).append(" ").append(m.value()).append(" = null;\n");
+        }
+        sb.append("                long start = in.position();\n");
+        sb.append("                in.beginObject();\n");
+        sb.append("                while (in.hasNext()) {\n");
+        sb.append("                    switch (in.nextName(NAMES)) {\n");
+        for (int i = 0; i < members.size(); ++i) {
+            Member m = members.get(i);
+            sb.append("                        case ").append(i).append(":\n");
+            sb.append("                            ").append(m.value()).append(" = ").append(m.reader()).append(".read(in);\n");
+            sb.append("                            break;\n");
+        }
+        sb.append("                        default:\n");
+        sb.append("                            in.skipValue();\n");
+        sb.append("                    }\n");
+        sb.append("                }\n");
+        sb.append("                in.endObject();\n");
+        List<String> members2 = new ArrayList<String>();
+        for (Member m: members) {
+            members2.add("\n                    " + m.value() + " != null ? " + m.value() + " : GeneratedSupport.<" + m.boxedType + ">notFound(\"" + m.name + "\", start)");
+        }
+        sb.append("                return result(").append(join(members2, ",")).append(");\n");
+        sb.append("            }\n\n");
+
+        List<String> resultParams = new ArrayList<String>();
+        List<String> rights = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+        List<String> partials = new ArrayList<String>();
+        for (Member m: members) {
+            resultParams.add(m.eitherType() + " " + m.value());
+            rights.add(m.value() + ".isRight()");
+            values.add(m.value() + ".right.get()");
+            partials.add("GeneratedSupport.partial(" + m.value() + ")");
+        }
+        sb.append("            private Either<Failure<").append(T).append(">,").append(T).append("> result(").append(join(resultParams, ", ")).append(") {\n");
+        sb.append("                if (").append(members.isEmpty() ? "true" : join(rights, " && ")).append(") {\n");
+        sb.append("                    try {\n");
+        sb.append("                        return Either.right(new ").append(T).append("(").append(join(values, ", ")).append("));\n");
+        sb.append("                    } catch (Exception e) {\n");
+        sb.append("                        return Either.left(Failure.<").append(T).append(">of(null, e));\n");
+        sb.append("                    }\n");
+        sb.append("                }\n");
+        sb.append("                List<Either<Exception,Object>> errors = new ArrayList<Either<Exception,Object>>();\n");
+        for (Member m: members) {
+            sb.append("                GeneratedSupport.addErrors(errors, ").append(m.value()).append(");\n");
+        }
+        sb.append("                ").append(T).append(" partialResult = null;\n");
+        sb.append("                try {\n");
+        sb.append("                    partialResult = new ").append(T).append("(").append(join(partials, ", ")).append(");\n");
+        sb.append("                } catch (Exception e) {\n");
+        sb.append("                    errors.add(0, Either.<Exception,Object>left(e));\n");
+        sb.append("                }\n");
+        sb.append("                return Either.left(Failure.of(partialResult, errors));\n");
+        sb.append("            }\n\n");
+        sb.append("            @Override\n");
+        sb.append("            public String toString() {\n");
+        sb.append("                return \"").append(dto.generatedName).append("\";\n");
+        sb.append("            }\n");
+        sb.append("        });\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
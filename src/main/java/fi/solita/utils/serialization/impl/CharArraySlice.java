@@ -0,0 +1,78 @@
+package fi.solita.utils.serialization.impl;
+
+import java.io.Serializable;
+
+/**
+ * A read-only view to a range of a shared char array. Used to hand out
+ * child values without copying them out of the parent input.
+ *
+ * Slices of an indexed input share its {@link StructuralIndex}.
+ */
+final class CharArraySlice implements CharSequence, Serializable {
+    final char[] chars;
+    final int start;
+    final int end;
+    final transient StructuralIndex index;
+
+    CharArraySlice(char[] chars, int start, int end) {
+        this(chars, start, end, null);
+    }
+
+    CharArraySlice(char[] chars, int start, int end, StructuralIndex index) {
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+        this.index = index;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException(start + "-" + end);
+        }
+        if (start == 0 && end == length()) {
+            return this;
+        }
+        return new CharArraySlice(chars, this.start + start, this.start + end, index);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = start; i < end; ++i) {
+            h = 31 * h + chars[i];
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        CharArraySlice other = (CharArraySlice) obj;
+        if (length() != other.length())
+            return false;
+        for (int i = 0; i < length(); ++i) {
+            if (chars[start + i] != other.chars[other.start + i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,280 @@
+package fi.solita.utils.serialization.impl;
+
+import java.math.BigInteger;
+
+/**
+ * Parses JSON numbers to correctly rounded doubles and floats directly from chars, without allocating.
+ *
+ * Up to 19 significant digits are read to an unsigned long. Values exactly representable in the
+ * floating point arithmetic are computed directly (Clinger's fast path), others with the
+ * Eisel-Lemire algorithm, which multiplies by a 128-bit approximation of the power of ten.
+ * The rare inputs it can't decide (more significant digits, subnormal results, exact halfway
+ * cases and overflow) fall back to {@link Double#parseDouble(String)}.
+ */
+final class DecimalParser {
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER = 308;
+
+    /**
+     * 5^q truncated to 128 bits, with the most significant bit set. For negative q,
+     * the reciprocal rounded up. Computed once instead of embedding the table.
+     */
+    private static final long[] POW5_HIGH = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+    private static final long[] POW5_LOW = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+    static {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; ++q) {
+            BigInteger c;
+            if (q >= 0) {
+                c = BigInteger.valueOf(5).pow(q);
+                if (c.compareTo(two127) < 0) {
+                    c = c.shiftLeft(128 - c.bitLength());
+                } else {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            } else {
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.subtract(BigInteger.ONE).bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 2 * 64;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                while (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            }
+            POW5_HIGH[q - SMALLEST_POWER] = c.shiftRight(64).longValue();
+            POW5_LOW[q - SMALLEST_POWER] = c.and(mask64).longValue();
+        }
+    }
+
+    private static final double[] DOUBLE_POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final float[] FLOAT_POW10 = {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private static final int MAX_DIGITS = 19;
+
+    /**
+     * Result of the Eisel-Lemire algorithm when it can't decide.
+     */
+    private static final long UNDECIDED = -1;
+
+    private DecimalParser() {
+    }
+
+    /**
+     * @param buf a valid JSON number between start and end.
+     */
+    static double parseDouble(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = buf[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long w = 0;
+        int digits = 0;
+        int q = 0;
+        for (; i < end && isDigit(buf[i]); ++i) {
+            if (digits < MAX_DIGITS) {
+                w = 10 * w + (buf[i] - '0');
+                if (w != 0) {
+                    digits++;
+                }
+            } else {
+                return slowDouble(buf, start, end);
+            }
+        }
+        if (i < end && buf[i] == '.') {
+            for (++i; i < end && isDigit(buf[i]); ++i) {
+                if (digits < MAX_DIGITS) {
+                    w = 10 * w + (buf[i] - '0');
+                    q--;
+                    if (w != 0) {
+                        digits++;
+                    }
+                } else if (buf[i] != '0') {
+                    return slowDouble(buf, start, end);
+                }
+            }
+        }
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            q += exponent(buf, i + 1, end);
+        }
+
+        if (w == 0 || q < SMALLEST_POWER) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (0 < w && w <= 1L << 53 && -22 <= q && q <= 22) {
+            double d = q < 0 ? w / DOUBLE_POW10[-q] : w * DOUBLE_POW10[q];
+            return negative ? -d : d;
+        }
+        long bits = q > LARGEST_POWER ? UNDECIDED : eiselLemire(w, q, 52, -1023, 2047);
+        if (bits == UNDECIDED) {
+            return slowDouble(buf, start, end);
+        }
+        double d = Double.longBitsToDouble(bits);
+        return negative ? -d : d;
+    }
+
+    /**
+     * @param buf a valid JSON number between start and end.
+     */
+    static float parseFloat(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = buf[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long w = 0;
+        int digits = 0;
+        int q = 0;
+        for (; i < end && isDigit(buf[i]); ++i) {
+            if (digits < MAX_DIGITS) {
+                w = 10 * w + (buf[i] - '0');
+                if (w != 0) {
+                    digits++;
+                }
+            } else {
+                return slowFloat(buf, start, end);
+            }
+        }
+        if (i < end && buf[i] == '.') {
+            for (++i; i < end && isDigit(buf[i]); ++i) {
+                if (digits < MAX_DIGITS) {
+                    w = 10 * w + (buf[i] - '0');
+                    q--;
+                    if (w != 0) {
+                        digits++;
+                    }
+                } else if (buf[i] != '0') {
+                    return slowFloat(buf, start, end);
+                }
+            }
+        }
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            q += exponent(buf, i + 1, end);
+        }
+
+        if (w == 0 || q < SMALLEST_POWER) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (0 < w && w <= 1L << 24 && -10 <= q && q <= 10) {
+            float f = q < 0 ? w / FLOAT_POW10[-q] : w * FLOAT_POW10[q];
+            return negative ? -f : f;
+        }
+        long bits = q > LARGEST_POWER ? UNDECIDED : eiselLemire(w, q, 23, -127, 255);
+        if (bits == UNDECIDED) {
+            return slowFloat(buf, start, end);
+        }
+        float f = Float.intBitsToFloat((int) bits);
+        return negative ? -f : f;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the exponent, clamped to well beyond any representable value.
+     */
+    private static int exponent(char[] buf, int i, int end) {
+        boolean negative = buf[i] == '-';
+        if (negative || buf[i] == '+') {
+            i++;
+        }
+        int ret = 0;
+        for (; i < end; ++i) {
+            if (ret < 100000) {
+                ret = 10 * ret + (buf[i] - '0');
+            }
+        }
+        return negative ? -ret : ret;
+    }
+
+    /**
+     * @return the bits of the positive binary floating point value closest to w 10^q, or {@link #UNDECIDED}.
+     */
+    private static long eiselLemire(long w, int q, int mantissaBits, int minimumExponent, int infinitePower) {
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        int index = q - SMALLEST_POWER;
+        long high = unsignedMultiplyHigh(w, POW5_HIGH[index]);
+        long low = w * POW5_HIGH[index];
+        long precisionMask = -1L >>> (mantissaBits + 3);
+        if ((high & precisionMask) == precisionMask) {
+            // the truncated power of five isn't precise enough, add the product with its lower bits
+            long secondHigh = unsignedMultiplyHigh(w, POW5_LOW[index]);
+            long newLow = low + secondHigh;
+            if (unsignedLess(newLow, low)) {
+                high++;
+            }
+            low = newLow;
+            if (low == -1L) {
+                return UNDECIDED;
+            }
+        }
+
+        int upperbit = (int) (high >>> 63);
+        int shift = upperbit + 64 - mantissaBits - 3;
+        long mantissa = high >>> shift;
+        int power2 = power(q) + upperbit - lz - minimumExponent;
+        if (power2 <= 0) {
+            // subnormal
+            return UNDECIDED;
+        }
+        if (unsignedLess(low, 2) && (mantissa & 3) == 1) {
+            // possibly exactly halfway between two values
+            return UNDECIDED;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 2L << mantissaBits) {
+            mantissa = 1L << mantissaBits;
+            power2++;
+        }
+        mantissa &= ~(1L << mantissaBits);
+        if (power2 >= infinitePower) {
+            return UNDECIDED;
+        }
+        return mantissa | (long) power2 << mantissaBits;
+    }
+
+    /**
+     * floor(log2(10^q)) + 63
+     */
+    private static int power(int q) {
+        return ((152170 + 65536) * q >> 16) + 63;
+    }
+
+    private static boolean unsignedLess(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        long signedHigh = x1 * y1 + z0 + (z1 >> 32);
+        return signedHigh + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    private static double slowDouble(char[] buf, int start, int end) {
+        return Double.parseDouble(new String(buf, start, end - start));
+    }
+
+    private static float slowFloat(char[] buf, int start, int end) {
+        return Float.parseFloat(new String(buf, start, end - start));
+    }
+}
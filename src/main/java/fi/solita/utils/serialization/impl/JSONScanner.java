@@ -0,0 +1,675 @@
+package fi.solita.utils.serialization.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import fi.solita.utils.serialization.json.JSONInputException;
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONStr;
+import fi.solita.utils.serialization.json.JSONSyntaxException;
+
+/**
+ * Hand-written single pass JSON scanner working directly on a char array.
+ *
+ * Values are validated while skipping over them, but not materialized,
+ * so that nested values can be handed out as slices of the original input
+ * and parsed only by whoever actually needs them.
+ *
+ * Accepts strict JSON, and additionally single-quoted strings for compatibility
+ * with {@link JSONorgImplementation}.
+ *
+ * A scanner over a {@link Reader} refills its buffer on demand, keeping only
+ * the value currently being scanned. Slices are then copied out.
+ */
+final class JSONScanner {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    char[] buf;
+    int end;
+    int pos;
+
+    private final Reader in;
+    private CharArraySlice source;
+    private int mark = -1;
+    private long discarded;
+
+    JSONScanner(char[] buf, int start, int end) {
+        this.buf = buf;
+        this.pos = start;
+        this.end = end;
+        this.in = null;
+    }
+
+    JSONScanner(Reader in, int bufferSize) {
+        this.buf = new char[bufferSize];
+        this.in = in;
+    }
+
+    /**
+     * Views created by this scanner are read in place, anything else is copied once.
+     */
+    static JSONScanner of(CharSequence json) {
+        CharSequence cs = json.subSequence(0, json.length());
+        if (cs instanceof CharArraySlice) {
+            CharArraySlice slice = (CharArraySlice) cs;
+            return new JSONScanner(slice.chars, slice.start, slice.end);
+        }
+        char[] chars = new char[cs.length()];
+        if (cs instanceof String) {
+            ((String) cs).getChars(0, chars.length, chars, 0);
+        } else {
+            for (int i = 0; i < chars.length; ++i) {
+                chars[i] = cs.charAt(i);
+            }
+        }
+        return new JSONScanner(chars, 0, chars.length);
+    }
+
+    /**
+     * Decodes UTF-8 input once to chars. ASCII is copied with a plain loop,
+     * a decoder is used only from the first non-ASCII byte onwards.
+     */
+    static JSONScanner of(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length];
+        int i = 0;
+        while (i < length) {
+            byte b = bytes[offset + i];
+            if (b < 0) {
+                break;
+            }
+            chars[i++] = (char) b;
+        }
+        if (i == length) {
+            return new JSONScanner(chars, 0, length);
+        }
+        CharBuffer out = CharBuffer.wrap(chars, i, length - i);
+        CharsetDecoder decoder = UTF8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset + i, length - i);
+        CoderResult res = decoder.decode(in, out, true);
+        if (res.isError()) {
+            throw new JSONSyntaxException("Malformed UTF-8 input at position " + (in.position() - offset));
+        }
+        decoder.flush(out);
+        return new JSONScanner(chars, 0, out.position());
+    }
+
+    /**
+     * @return a view to the given range of the input, or a copy when reading a stream.
+     */
+    JSONStr slice(int start, int end) {
+        if (in != null) {
+            return new JSONStr(new String(buf, start, end - start));
+        }
+        if (source == null) {
+            source = new CharArraySlice(buf, 0, buf.length);
+        }
+        return new JSONStr(source, start, end - start);
+    }
+
+    /**
+     * Splits an array to views of its elements, without parsing them.
+     */
+    JSONStr[] readArray() {
+        List<JSONStr> ret = new ArrayList<JSONStr>();
+        expect('[');
+        if (!consume(']')) {
+            do {
+                int start = skipValue();
+                ret.add(slice(start, pos));
+            } while (consume(','));
+            expect(']');
+        }
+        return ret.toArray(new JSONStr[ret.size()]);
+    }
+
+    /**
+     * Splits an object to views of its member values, without parsing them.
+     * Members are in input order.
+     * @param uniqueKeys whether a duplicate key is an error, instead of the last one winning.
+     */
+    Map<String, JSONStr> readObject(boolean uniqueKeys) {
+        Map<String,JSONStr> ret = new LinkedHashMap<String,JSONStr>();
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                int start = skipValue();
+                if (ret.put(key, slice(start, pos)) != null && uniqueKeys) {
+                    throw error("Duplicate key \"" + key + "\"");
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        return ret;
+    }
+
+    /**
+     * Splits an object to views of the values of the given members. Other members are
+     * skipped, validating them but without unescaping or keeping anything.
+     * @param uniqueKeys whether a duplicate of a given member is an error, instead of the last one winning.
+     * @return values in the order of the names, null for missing members.
+     */
+    JSONStr[] readMembers(JSONNames names, boolean uniqueKeys) {
+        JSONStr[] ret = new JSONStr[names.size()];
+        expect('{');
+        if (!consume('}')) {
+            do {
+                int i = readName(names);
+                expect(':');
+                if (i < 0) {
+                    skipAny();
+                    continue;
+                }
+                int start = skipValue();
+                if (ret[i] != null && uniqueKeys) {
+                    throw error("Duplicate key \"" + names.get(i) + "\"");
+                }
+                ret[i] = slice(start, pos);
+            } while (consume(','));
+            expect('}');
+        }
+        return ret;
+    }
+
+    /**
+     * @return position in the whole input.
+     */
+    long position() {
+        return discarded + pos;
+    }
+
+    /**
+     * Reads more input, keeping everything from the mark (or the current position) onwards.
+     * The buffer grows only if the kept part fills it.
+     * @return false at the end of input.
+     */
+    private boolean fill() {
+        if (in == null) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : pos;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, end - keep);
+            end -= keep;
+            pos -= keep;
+            if (mark >= 0) {
+                mark -= keep;
+            }
+            discarded += keep;
+        }
+        if (end == buf.length) {
+            char[] newBuf = new char[buf.length * 2];
+            System.arraycopy(buf, 0, newBuf, 0, end);
+            buf = newBuf;
+        }
+        try {
+            int n;
+            do {
+                n = in.read(buf, end, buf.length - end);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            end += n;
+            return true;
+        } catch (IOException e) {
+            throw new JSONInputException(e);
+        }
+    }
+
+    private boolean available(int n) {
+        while (end - pos < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return next non-whitespace char without consuming it, or -1 at the end of input.
+     */
+    int peek() {
+        while (pos < end || fill()) {
+            char c = buf[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    boolean consume(char c) {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    void expect(char c) {
+        if (!consume(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    void expectEnd() {
+        if (peek() != -1) {
+            throw error("Unexpected content after value");
+        }
+    }
+
+    /**
+     * Skips over a single value of any type, keeping it in the buffer.
+     * @return start position of the skipped value, valid until the next read.
+     *         The value ends at {@link #pos}.
+     */
+    int skipValue() {
+        peek();
+        mark = pos;
+        skipAny();
+        int start = mark;
+        mark = -1;
+        return start;
+    }
+
+    /**
+     * Skips over a single value of any type, without keeping it.
+     */
+    void skipAny() {
+        switch (peek()) {
+            case '{':
+                skipObject();
+                break;
+            case '[':
+                skipArray();
+                break;
+            case '"':
+            case '\'':
+                skipString();
+                break;
+            case 't':
+                skipLiteral("true");
+                break;
+            case 'f':
+                skipLiteral("false");
+                break;
+            case 'n':
+                skipLiteral("null");
+                break;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                skipNumber();
+        }
+    }
+
+    private void skipObject() {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+        do {
+            int c = peek();
+            if (c != '"' && c != '\'') {
+                throw error("Expected a key");
+            }
+            skipString();
+            expect(':');
+            skipAny();
+        } while (consume(','));
+        expect('}');
+    }
+
+    private void skipArray() {
+        expect('[');
+        if (consume(']')) {
+            return;
+        }
+        do {
+            skipAny();
+        } while (consume(','));
+        expect(']');
+    }
+
+    void skipLiteral(String literal) {
+        peek();
+        int len = literal.length();
+        if (!available(len)) {
+            throw error("Expected '" + literal + "'");
+        }
+        for (int i = 0; i < len; ++i) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                throw error("Expected '" + literal + "'");
+            }
+        }
+        pos += len;
+    }
+
+    /**
+     * Chars that end a run of plain chars in a string: quotes, backslash and control chars.
+     */
+    private static final boolean[] STRING_SPECIAL = new boolean[128];
+    static {
+        for (int c = 0; c < 0x20; ++c) {
+            STRING_SPECIAL[c] = true;
+        }
+        STRING_SPECIAL['"'] = true;
+        STRING_SPECIAL['\''] = true;
+        STRING_SPECIAL['\\'] = true;
+    }
+
+    /**
+     * Skips a string without decoding it, validating escapes on the way.
+     * @return true if the string contained escapes.
+     */
+    boolean skipString() {
+        char quote = buf[pos++];
+        boolean escaped = false;
+        while (pos < end || fill()) {
+            // skip a run of plain chars with one lookup each
+            int p = pos;
+            while (p < end && (buf[p] >= 128 || !STRING_SPECIAL[buf[p]])) {
+                p++;
+            }
+            pos = p;
+            if (p == end) {
+                continue;
+            }
+            char c = buf[pos++];
+            if (c == quote) {
+                return escaped;
+            } else if (c == '\\') {
+                escaped = true;
+                skipEscape();
+            } else if (c < 0x20) {
+                pos--;
+                throw error("Unescaped control character in string");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipEscape() {
+        if (!available(1)) {
+            throw error("Unterminated string");
+        }
+        switch (buf[pos++]) {
+            case '"': case '\'': case '\\': case '/':
+            case 'b': case 'f': case 'n': case 'r': case 't':
+                return;
+            case 'u':
+                if (!available(4)) {
+                    throw error("Invalid unicode escape");
+                }
+                for (int i = 0; i < 4; ++i) {
+                    hex(buf[pos + i]);
+                }
+                pos += 4;
+                return;
+            default:
+                pos--;
+                throw error("Invalid escape");
+        }
+    }
+
+    private int hex(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        throw error("Invalid hex digit '" + c + "'");
+    }
+
+    /**
+     * Reads a string value starting at the current position.
+     * Strings without escapes are copied out as-is.
+     */
+    String readString() {
+        int c = peek();
+        if (c != '"' && c != '\'') {
+            throw error("Expected a string");
+        }
+        mark = pos;
+        boolean escaped = skipString();
+        int start = mark + 1;
+        mark = -1;
+        if (!escaped) {
+            return new String(buf, start, pos - 1 - start);
+        }
+        return unescape(start, pos - 1);
+    }
+
+    /**
+     * Reads a string matching it against the given names, without building
+     * a String unless it contains escapes.
+     * @return index of the string in the names, or -1.
+     */
+    int readName(JSONNames names) {
+        int c = peek();
+        if (c != '"' && c != '\'') {
+            throw error("Expected a string");
+        }
+        mark = pos;
+        boolean escaped = skipString();
+        int start = mark + 1;
+        mark = -1;
+        if (!escaped) {
+            return names.indexOf(buf, start, pos - 1 - start);
+        }
+        return names.indexOf(unescape(start, pos - 1));
+    }
+
+    /**
+     * Decodes already validated escapes, copying the runs between them in bulk.
+     */
+    private String unescape(int start, int last) {
+        StringBuilder sb = new StringBuilder(last - start);
+        int i = start;
+        while (i < last) {
+            int run = i;
+            while (i < last && buf[i] != '\\') {
+                i++;
+            }
+            sb.append(buf, run, i - run);
+            if (i == last) {
+                break;
+            }
+            char ch = buf[i + 1];
+            i += 2;
+            switch (ch) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) ((hex(buf[i]) << 12) | (hex(buf[i+1]) << 8) | (hex(buf[i+2]) << 4) | hex(buf[i+3])));
+                    i += 4;
+                    break;
+                default:
+                    sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Skips a number validating it against the JSON grammar.
+     * @return start position of the number, valid until the next read.
+     *         The number ends at {@link #pos}.
+     */
+    int number() {
+        peek();
+        mark = pos;
+        skipNumber();
+        int start = mark;
+        mark = -1;
+        return start;
+    }
+
+    private void skipNumber() {
+        if (available(1) && buf[pos] == '-') {
+            pos++;
+        }
+        if (available(1) && buf[pos] == '0') {
+            pos++;
+        } else if (skipDigits() == 0) {
+            throw error("Invalid number");
+        }
+        if (available(1) && buf[pos] == '.') {
+            pos++;
+            if (skipDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+        if (available(1) && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            if (available(1) && (buf[pos] == '+' || buf[pos] == '-')) {
+                pos++;
+            }
+            if (skipDigits() == 0) {
+                throw error("Invalid number");
+            }
+        }
+    }
+
+    private int skipDigits() {
+        int count = 0;
+        while ((pos < end || fill()) && buf[pos] >= '0' && buf[pos] <= '9') {
+            pos++;
+            count++;
+        }
+        return count;
+    }
+
+    static boolean isIntegral(char[] buf, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            char c = buf[i];
+            if (c == '.' || c == 'e' || c == 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean readBoolean() {
+        if (peek() == 't') {
+            skipLiteral("true");
+            return true;
+        }
+        skipLiteral("false");
+        return false;
+    }
+
+    double readDouble() {
+        int start = number();
+        return DecimalParser.parseDouble(buf, start, pos);
+    }
+
+    float readFloat() {
+        int start = number();
+        return DecimalParser.parseFloat(buf, start, pos);
+    }
+
+    BigInteger readBigInteger() {
+        int start = number();
+        if (isIntegral(buf, start, pos)) {
+            return new BigInteger(new String(buf, start, pos - start));
+        }
+        return integerPart(buf, start, pos, pos - start + MAX_EXPONENT_DIGITS, "BigInteger");
+    }
+
+    /**
+     * Parses an integer straight from the buffer, falling back to {@link BigDecimal} only for
+     * fractions, exponents and values that overflow along the way.
+     * A fraction is truncated towards zero, as a cast from a double would, so {@code 1.9} is 1.
+     * @throws ArithmeticException if the value doesn't fit in a long.
+     */
+    long readLong() {
+        int start = number();
+        return parseLong(buf, start, pos);
+    }
+
+    static long parseLong(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = buf[i] == '-';
+        if (negative) {
+            i++;
+        }
+        // accumulate negatively, since the negative range is larger
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; ++i) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                return parseLongSlow(buf, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return parseLongSlow(buf, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static long parseLongSlow(char[] buf, int start, int end) {
+        BigInteger ret = integerPart(buf, start, end, 19, "long");
+        if (ret.bitLength() > 63) {
+            throw new ArithmeticException("Number out of range for long: " + new String(buf, start, end - start));
+        }
+        return ret.longValue();
+    }
+
+    /**
+     * Integers of more digits than this, beyond those written out, are rejected by
+     * {@link #readBigInteger()}, so that a short exponent can't expand to a huge value.
+     */
+    private static final int MAX_EXPONENT_DIGITS = 1000;
+
+    /**
+     * The integer part of a number, checked to have at most the given number of digits
+     * before expanding any exponent, which would otherwise cost time and memory
+     * exponential in the length of the input.
+     * @throws ArithmeticException if the integer part has more digits.
+     */
+    private static BigInteger integerPart(char[] buf, int start, int end, int maxDigits, String type) {
+        BigDecimal value = new BigDecimal(buf, start, end - start);
+        long digits = (long) value.precision() - value.scale();
+        if (digits > maxDigits) {
+            throw new ArithmeticException("Number out of range for " + type + ": " + new String(buf, start, end - start));
+        }
+        if (digits <= 0) {
+            // also avoids expanding a large negative exponent
+            return BigInteger.ZERO;
+        }
+        return value.toBigInteger();
+    }
+
+    BigDecimal readBigDecimal() {
+        int start = number();
+        return new BigDecimal(buf, start, pos - start);
+    }
+
+    JSONSyntaxException error(String message) {
+        return new JSONSyntaxException(message + " at position " + position());
+    }
+}
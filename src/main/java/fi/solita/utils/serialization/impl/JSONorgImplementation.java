@@ -4,6 +4,7 @@ import static fi.solita.utils.functional.Collections.newList;
 import static fi.solita.utils.functional.Collections.newMapOfSize;
 import static fi.solita.utils.functional.Functional.map;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -16,7 +17,11 @@ import org.json.JSONTokener;
 
 import fi.solita.utils.functional.Pair;
 import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONNames;
 import fi.solita.utils.serialization.json.JSONStr;
+import fi.solita.utils.serialization.json.JSONSyntaxException;
+import fi.solita.utils.serialization.json.JSONWriter;
+import fi.solita.utils.serialization.json.ShortestDecimal;
 
 /**
  * JSON serialization/deserialization low-level implementation
@@ -26,7 +31,22 @@ public class JSONorgImplementation extends JSON implements Serializable {
     
     @Override
     public JSONStr toJSON(String object) {
-        return new JSONStr(assertNotNull(JSONObject.quote(object)));
+        StringBuilder sb = new StringBuilder(object == null ? 2 : object.length() + 2);
+        try {
+            StringCodec.quoteLikeJsonOrg(sb, object == null ? "" : object);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new RuntimeException(e);
+        }
+        return new JSONStr(sb.toString());
+    }
+
+    /**
+     * Same output as {@link JSONObject#quote(String)}, without building it separately.
+     */
+    @Override
+    protected void write(JSONWriter out, String object) throws IOException {
+        StringCodec.quoteLikeJsonOrg(out, object == null ? "" : object);
     }
 
     @Override
@@ -36,7 +56,11 @@ public class JSONorgImplementation extends JSON implements Serializable {
 
     @Override
     public JSONStr toJSON(double object) {
-        return new JSONStr(assertNotNull(JSONObject.valueToString(object)));
+        if (Double.isInfinite(object) || Double.isNaN(object)) {
+            // rejected by json.org
+            return new JSONStr(assertNotNull(JSONObject.valueToString(object)));
+        }
+        return new JSONStr(ShortestDecimal.toString(object));
     }
 
     @Override
@@ -59,9 +83,23 @@ public class JSONorgImplementation extends JSON implements Serializable {
         return new JSONStr(assertNotNull(JSONObject.valueToString(map(JSONorgImplementation_.mapToJSONString, object))));
     }
 
+    /**
+     * Quoted strings are scanned directly, anything else json.org accepts is left to it.
+     */
     @Override
     public String toString(JSONStr json) {
-        return (String) new JSONTokener(json.toString()).nextValue();
+        String plain = StringCodec.unquoted(json);
+        if (plain != null) {
+            return plain;
+        }
+        try {
+            JSONScanner s = JSONScanner.of(json);
+            String ret = s.readString();
+            s.expectEnd();
+            return ret;
+        } catch (JSONSyntaxException e) {
+            return (String) new JSONTokener(json.toString()).nextValue();
+        }
     }
 
     @Override
@@ -69,9 +107,31 @@ public class JSONorgImplementation extends JSON implements Serializable {
         return (Boolean) new JSONTokener(json.toString()).nextValue();
     }
 
+    /**
+     * Scanned directly, without a tokenizer and boxing. Anything else json.org accepts is left to it.
+     */
     @Override
     public double toDouble(JSONStr json) {
-        return (Double) new JSONTokener(json.toString()).nextValue();
+        try {
+            JSONScanner s = JSONScanner.of(json);
+            double ret = s.readDouble();
+            s.expectEnd();
+            return ret;
+        } catch (JSONSyntaxException e) {
+            return (Double) new JSONTokener(json.toString()).nextValue();
+        }
+    }
+
+    @Override
+    public float toFloat(JSONStr json) {
+        try {
+            JSONScanner s = JSONScanner.of(json);
+            float ret = s.readFloat();
+            s.expectEnd();
+            return ret;
+        } catch (JSONSyntaxException e) {
+            return super.toFloat(json);
+        }
     }
 
     @Override
@@ -79,29 +139,73 @@ public class JSONorgImplementation extends JSON implements Serializable {
         return BigInteger.valueOf(((Number)new JSONTokener(json.toString()).nextValue()).longValue());
     }
 
+    /**
+     * Scanned directly, without a tokenizer and boxing. Anything else json.org accepts is left to it.
+     */
+    @Override
+    public long toLong(JSONStr json) {
+        try {
+            JSONScanner s = JSONScanner.of(json);
+            long ret = s.readLong();
+            s.expectEnd();
+            return ret;
+        } catch (JSONSyntaxException e) {
+            return super.toLong(json);
+        }
+    }
+
     @Override
     public BigDecimal toBigDecimal(JSONStr json) {
         return BigDecimal.valueOf(((Number)new JSONTokener(json.toString()).nextValue()).doubleValue());
     }
 
+    /**
+     * Elements are views to the input as is, so that descending into them doesn't
+     * copy, reorder keys or normalize numbers. Anything else json.org accepts is left to it.
+     */
     @Override
     public JSONStr[] toArray(JSONStr json) {
-        JSONArray array = new JSONArray(json.toString());
-        JSONStr[] ret = new JSONStr[array.length()];
-        for (int i = 0; i < array.length(); ++i) {
-            ret[i] = new JSONStr(assertNotNull(JSONObject.valueToString(array.get(i))));
+        try {
+            return StructuralIndex.toArray(json, Integer.MAX_VALUE);
+        } catch (JSONSyntaxException e) {
+            JSONArray array = new JSONArray(json.toString());
+            JSONStr[] ret = new JSONStr[array.length()];
+            for (int i = 0; i < array.length(); ++i) {
+                ret[i] = new JSONStr(assertNotNull(JSONObject.valueToString(array.get(i))));
+            }
+            return ret;
         }
-        return ret;
     }
 
+    /**
+     * Member values are views to the input as is, in input order.
+     * Anything else json.org accepts is left to it, as are duplicate keys, which it rejects.
+     */
     @Override
     public Map<String, JSONStr> toMap(JSONStr json) {
-        JSONObject map = new JSONObject(json.toString());
-        Map<String,JSONStr> ret = newMapOfSize(map.keySet().size());
-        for (Object key: map.keySet()) {
-            ret.put(key.toString(), new JSONStr(assertNotNull(JSONObject.valueToString(map.get(key.toString())))));
+        try {
+            return StructuralIndex.toMap(json, true, Integer.MAX_VALUE);
+        } catch (JSONSyntaxException e) {
+            JSONObject map = new JSONObject(json.toString());
+            Map<String,JSONStr> ret = newMapOfSize(map.keySet().size());
+            for (Object key: map.keySet()) {
+                ret.put(key.toString(), new JSONStr(assertNotNull(JSONObject.valueToString(map.get(key.toString())))));
+            }
+            return ret;
+        }
+    }
+    
+    /**
+     * Other members are skipped without materializing them, so only duplicates
+     * of the given members are rejected. Anything else json.org accepts is left to it.
+     */
+    @Override
+    public JSONStr[] toMembers(JSONStr json, JSONNames names) {
+        try {
+            return StructuralIndex.toMembers(json, names, true, Integer.MAX_VALUE);
+        } catch (JSONSyntaxException e) {
+            return super.toMembers(json, names);
         }
-        return ret;
     }
     
     static <T> T assertNotNull(T value) {
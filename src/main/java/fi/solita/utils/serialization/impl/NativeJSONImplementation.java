@@ -0,0 +1,247 @@
+package fi.solita.utils.serialization.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+import fi.solita.utils.functional.Option;
+import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONBytes;
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONReader;
+import fi.solita.utils.serialization.json.JSONStr;
+import fi.solita.utils.serialization.json.JSONWriter;
+import fi.solita.utils.serialization.json.ShortestDecimal;
+
+/**
+ * JSON serialization/deserialization low-level implementation
+ * with its own single pass scanner.
+ *
+ * Each input char is scanned only once: splitting an array or object indexes
+ * the extents of all of its nested values, and hands out the children as views
+ * to the original input sharing the index, which are then parsed by the child
+ * deserializers.
+ */
+public class NativeJSONImplementation extends JSON implements Serializable {
+    
+    public static final int STREAM_BUFFER_SIZE = 8192;
+
+    private final int twoStageThreshold;
+
+    public NativeJSONImplementation() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param twoStageThreshold inputs of at least this many chars are indexed in two stages
+     *                          like simdjson does: first finding all structural chars 64 at a time
+     *                          with bitmasks, then walking over them. Without vector instructions
+     *                          that is usually slower than the default single pass, so measure first.
+     */
+    public NativeJSONImplementation(int twoStageThreshold) {
+        this.twoStageThreshold = twoStageThreshold;
+    }
+
+    @Override
+    public JSONStr toJSON(String object) {
+        StringBuilder sb = new StringBuilder(object.length() + 2);
+        try {
+            StringCodec.quote(sb, object);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new RuntimeException(e);
+        }
+        return new JSONStr(sb.toString());
+    }
+
+    @Override
+    public JSONStr toJSON(boolean object) {
+        return new JSONStr(object ? "true" : "false");
+    }
+
+    @Override
+    public JSONStr toJSON(double object) {
+        return new JSONStr(numberToString(object));
+    }
+
+    @Override
+    public JSONStr toJSON(BigInteger object) {
+        return new JSONStr(object.toString());
+    }
+
+    @Override
+    public JSONStr toJSON(BigDecimal object) {
+        return new JSONStr(trimFraction(object.toString()));
+    }
+
+    @Override
+    public JSONStr toJSON(Iterable<JSONStr> object) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        boolean first = true;
+        for (JSONStr value: object) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(value);
+        }
+        return new JSONStr(sb.append(']').toString());
+    }
+
+    @Override
+    public JSONStr toJSON(Map<String, JSONStr> object) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        boolean first = true;
+        for (Map.Entry<String, JSONStr> entry: object.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(toJSON(entry.getKey())).append(':').append(entry.getValue());
+        }
+        return new JSONStr(sb.append('}').toString());
+    }
+
+    @Override
+    protected void write(JSONWriter out, String object) throws IOException {
+        StringCodec.quote(out, object);
+    }
+
+    @Override
+    protected void write(JSONWriter out, boolean object) throws IOException {
+        out.append(object ? "true" : "false");
+    }
+
+    @Override
+    protected void write(JSONWriter out, BigInteger object) throws IOException {
+        out.append(object.toString());
+    }
+
+    @Override
+    protected void write(JSONWriter out, BigDecimal object) throws IOException {
+        out.append(trimFraction(object.toString()));
+    }
+
+    @Override
+    public Option<JSONReader> reader(JSONStr json) {
+        return Option.<JSONReader>Some(new NativeJSONReader(this, JSONScanner.of(json)));
+    }
+
+    @Override
+    public Option<JSONReader> reader(JSONBytes json) {
+        return Option.<JSONReader>Some(new NativeJSONReader(this, JSONScanner.of(json.array(), json.offset(), json.length())));
+    }
+
+    /**
+     * Reads through a buffer of {@link #STREAM_BUFFER_SIZE} chars, which grows only
+     * if a single value read as-is doesn't fit.
+     */
+    @Override
+    public Option<JSONReader> reader(Reader in) {
+        return Option.<JSONReader>Some(new NativeJSONReader(this, new JSONScanner(in, STREAM_BUFFER_SIZE)));
+    }
+
+    @Override
+    public String toString(JSONStr json) {
+        String plain = StringCodec.unquoted(json);
+        if (plain != null) {
+            return plain;
+        }
+        JSONScanner s = JSONScanner.of(json);
+        String ret = s.readString();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public boolean toBoolean(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        boolean ret = s.readBoolean();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public double toDouble(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        double ret = s.readDouble();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public float toFloat(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        float ret = s.readFloat();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public BigInteger toBigInteger(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        BigInteger ret = s.readBigInteger();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public long toLong(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        long ret = s.readLong();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public BigDecimal toBigDecimal(JSONStr json) {
+        JSONScanner s = JSONScanner.of(json);
+        BigDecimal ret = s.readBigDecimal();
+        s.expectEnd();
+        return ret;
+    }
+
+    @Override
+    public JSONStr[] toArray(JSONStr json) {
+        return StructuralIndex.toArray(json, twoStageThreshold);
+    }
+
+    @Override
+    public Map<String, JSONStr> toMap(JSONStr json) {
+        return StructuralIndex.toMap(json, false, twoStageThreshold);
+    }
+
+    @Override
+    public JSONStr[] toMembers(JSONStr json, JSONNames names) {
+        return StructuralIndex.toMembers(json, names, false, twoStageThreshold);
+    }
+
+    /**
+     * Same layout as json.org: integral values without a trailing ".0".
+     */
+    static String numberToString(double d) {
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers: " + d);
+        }
+        return ShortestDecimal.toString(d);
+    }
+
+    static String trimFraction(String number) {
+        if (number.indexOf('.') > 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            int end = number.length();
+            while (number.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (number.charAt(end - 1) == '.') {
+                end--;
+            }
+            return number.substring(0, end);
+        }
+        return number;
+    }
+}
@@ -0,0 +1,279 @@
+package fi.solita.utils.serialization.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONReader;
+import fi.solita.utils.serialization.json.JSONStr;
+
+/**
+ * {@link JSONReader} on top of {@link JSONScanner}.
+ *
+ * Separating commas are consumed eagerly after each value, so that
+ * {@link #hasNext} only needs to look at the next char.
+ */
+final class NativeJSONReader extends JSONReader {
+    private static final byte EMPTY = 0;
+    private static final byte AFTER_COMMA = 1;
+    private static final byte AFTER_VALUE = 2;
+
+    private final JSONScanner s;
+
+    private char[] closers = new char[16];
+    private byte[] states = new byte[16];
+    private int depth;
+
+    NativeJSONReader(JSON format, JSONScanner scanner) {
+        super(format);
+        this.s = scanner;
+    }
+
+    @Override
+    public Token peek() {
+        int c = s.peek();
+        switch (c) {
+            case '[': return Token.BEGIN_ARRAY;
+            case ']': return Token.END_ARRAY;
+            case '{': return Token.BEGIN_OBJECT;
+            case '}': return Token.END_OBJECT;
+            case '"': case '\'': return Token.STRING;
+            case 't': case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            case -1: return Token.END_DOCUMENT;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw s.error("Unexpected character '" + (char)c + "'");
+        }
+    }
+
+    @Override
+    public void beginArray() {
+        begin('[', ']', Token.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() {
+        end(']');
+    }
+
+    @Override
+    public void beginObject() {
+        begin('{', '}', Token.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() {
+        end('}');
+    }
+
+    private void begin(char opener, char closer, Token token) {
+        if (s.peek() != opener) {
+            throw unexpected(token);
+        }
+        beforeValue();
+        s.pos++;
+        depth++;
+        if (depth == states.length) {
+            char[] newClosers = new char[depth * 2];
+            byte[] newStates = new byte[depth * 2];
+            System.arraycopy(closers, 0, newClosers, 0, depth);
+            System.arraycopy(states, 0, newStates, 0, depth);
+            closers = newClosers;
+            states = newStates;
+        }
+        closers[depth] = closer;
+        states[depth] = EMPTY;
+    }
+
+    private void end(char closer) {
+        if (depth == 0 || closers[depth] != closer || states[depth] == AFTER_COMMA) {
+            throw s.error("Unexpected '" + closer + "'");
+        }
+        s.expect(closer);
+        depth--;
+        afterValue();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (depth == 0) {
+            return false;
+        }
+        int c = s.peek();
+        switch (states[depth]) {
+            case AFTER_COMMA:
+                if (c == closers[depth]) {
+                    throw s.error("Trailing comma");
+                }
+                return true;
+            case EMPTY:
+                return c != closers[depth];
+            default:
+                if (c == closers[depth]) {
+                    return false;
+                }
+                throw s.error("Expected ',' or '" + closers[depth] + "'");
+        }
+    }
+
+    private void beforeValue() {
+        if (depth > 0 && states[depth] == AFTER_VALUE && closers[depth] == ']') {
+            throw s.error("Expected ','");
+        }
+    }
+
+    private void afterValue() {
+        if (depth > 0) {
+            states[depth] = s.consume(',') ? AFTER_COMMA : AFTER_VALUE;
+        }
+    }
+
+    @Override
+    public String nextName() {
+        beforeName();
+        String name = s.readString();
+        s.expect(':');
+        return name;
+    }
+
+    @Override
+    public int nextName(JSONNames names) {
+        beforeName();
+        int ret = s.readName(names);
+        s.expect(':');
+        return ret;
+    }
+
+    private void beforeName() {
+        if (depth == 0 || closers[depth] != '}') {
+            throw new IllegalStateException("Not inside an object");
+        }
+        if (!hasNext()) {
+            throw unexpected(Token.STRING);
+        }
+    }
+
+    @Override
+    public String nextString() {
+        expectToken(Token.STRING);
+        String ret = s.readString();
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        expectToken(Token.BOOLEAN);
+        boolean ret = s.readBoolean();
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public double nextDouble() {
+        expectToken(Token.NUMBER);
+        double ret = s.readDouble();
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public float nextFloat() {
+        expectToken(Token.NUMBER);
+        float ret = s.readFloat();
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public BigInteger nextBigInteger() {
+        expectToken(Token.NUMBER);
+        BigInteger ret = null;
+        ArithmeticException outOfRange = null;
+        try {
+            ret = s.readBigInteger();
+        } catch (ArithmeticException e) {
+            // the number was consumed, so finish with it before failing
+            outOfRange = e;
+        }
+        afterValue();
+        if (outOfRange != null) {
+            throw outOfRange;
+        }
+        return ret;
+    }
+
+    @Override
+    public long nextLong() {
+        expectToken(Token.NUMBER);
+        long ret = 0;
+        ArithmeticException outOfRange = null;
+        try {
+            ret = s.readLong();
+        } catch (ArithmeticException e) {
+            // the number was consumed, so finish with it before failing
+            outOfRange = e;
+        }
+        afterValue();
+        if (outOfRange != null) {
+            throw outOfRange;
+        }
+        return ret;
+    }
+
+    @Override
+    public BigDecimal nextBigDecimal() {
+        expectToken(Token.NUMBER);
+        BigDecimal ret = s.readBigDecimal();
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public void nextNull() {
+        expectToken(Token.NULL);
+        s.skipLiteral("null");
+        afterValue();
+    }
+
+    private void expectToken(Token token) {
+        if (peek() != token) {
+            throw unexpected(token);
+        }
+        beforeValue();
+    }
+
+    @Override
+    public JSONStr nextValue() {
+        beforeValue();
+        int start = s.skipValue();
+        JSONStr ret = s.slice(start, s.pos);
+        afterValue();
+        return ret;
+    }
+
+    @Override
+    public void skipValue() {
+        beforeValue();
+        s.skipAny();
+        afterValue();
+    }
+
+    @Override
+    public long position() {
+        s.peek();
+        return s.position();
+    }
+
+    @Override
+    public void endDocument() {
+        if (depth != 0) {
+            throw s.error("Unexpected end of document");
+        }
+        s.expectEnd();
+    }
+}
@@ -0,0 +1,130 @@
+package fi.solita.utils.serialization.impl;
+
+import java.io.IOException;
+
+/**
+ * Table-driven JSON string escaping. Runs of chars needing no escaping are found with
+ * a single table lookup per char and appended in bulk.
+ *
+ * The input is chars, not bytes, so the chars are looked up one at a time instead of
+ * testing machine words (SWAR), which would need packing them to longs first.
+ */
+final class StringCodec {
+    /**
+     * For ASCII chars, 0 if written as is, otherwise the char following the backslash ('u' for a unicode escape).
+     */
+    private static final char[] ESCAPES = new char[128];
+
+    /**
+     * As {@link #ESCAPES}, but also '/', which json.org escapes after '<'.
+     */
+    private static final char[] JSONORG_ESCAPES = new char[128];
+    static {
+        for (int c = 0; c < 0x20; ++c) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        System.arraycopy(ESCAPES, 0, JSONORG_ESCAPES, 0, ESCAPES.length);
+        JSONORG_ESCAPES['/'] = '/';
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private StringCodec() {
+    }
+
+    /**
+     * Writes the string quoted, escaping line and paragraph separators in addition to what JSON requires.
+     */
+    static void quote(Appendable out, String str) throws IOException {
+        out.append('"');
+        int len = str.length();
+        int run = 0;
+        for (int i = 0; i < len; ++i) {
+            char c = str.charAt(i);
+            char escape;
+            if (c < 128) {
+                escape = ESCAPES[c];
+                if (escape == 0) {
+                    continue;
+                }
+            } else if (c == 0x2028 || c == 0x2029) {
+                escape = 'u';
+            } else {
+                continue;
+            }
+            out.append(str, run, i);
+            run = i + 1;
+            escape(out, c, escape);
+        }
+        out.append(str, run, len);
+        out.append('"');
+    }
+
+    /**
+     * Writes the string quoted exactly as json.org does: additionally escaping "&lt;/",
+     * and the C1 control and general punctuation ranges.
+     */
+    static void quoteLikeJsonOrg(Appendable out, String str) throws IOException {
+        out.append('"');
+        int len = str.length();
+        int run = 0;
+        for (int i = 0; i < len; ++i) {
+            char c = str.charAt(i);
+            char escape;
+            if (c < 128) {
+                escape = JSONORG_ESCAPES[c];
+                if (escape == 0 || c == '/' && (i == 0 || str.charAt(i - 1) != '<')) {
+                    continue;
+                }
+            } else if (c < 0xa0 || c >= 0x2000 && c < 0x2100) {
+                escape = 'u';
+            } else {
+                continue;
+            }
+            out.append(str, run, i);
+            run = i + 1;
+            escape(out, c, escape);
+        }
+        out.append(str, run, len);
+        out.append('"');
+    }
+
+    private static void escape(Appendable out, char c, char escape) throws IOException {
+        out.append('\\');
+        out.append(escape);
+        if (escape == 'u') {
+            out.append(HEX[c >> 12]);
+            out.append(HEX[(c >> 8) & 0xf]);
+            out.append(HEX[(c >> 4) & 0xf]);
+            out.append(HEX[c & 0xf]);
+        }
+    }
+
+    /**
+     * @return the contents of a quoted JSON string without escapes as is, or null if it needs to be scanned.
+     */
+    static String unquoted(CharSequence json) {
+        int len = json.length();
+        if (len < 2) {
+            return null;
+        }
+        char quote = json.charAt(0);
+        if (quote != '"' && quote != '\'' || json.charAt(len - 1) != quote) {
+            return null;
+        }
+        for (int i = 1; i < len - 1; ++i) {
+            char c = json.charAt(i);
+            if (c < 128 && ESCAPES[c] != 0 || c == quote) {
+                return null;
+            }
+        }
+        return json.subSequence(1, len - 1).toString();
+    }
+}
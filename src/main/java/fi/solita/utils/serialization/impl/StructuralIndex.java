@@ -0,0 +1,340 @@
+package fi.solita.utils.serialization.impl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONStr;
+import fi.solita.utils.serialization.json.JSONSyntaxException;
+
+/**
+ * Extents of every value of a JSON input, built once in a single validating pass
+ * when an array or object is first split. Large inputs can be indexed in two stages
+ * instead: first finding all structural chars, then walking over them.
+ *
+ * The values are in document order, each followed by its members: for arrays the
+ * elements, for objects alternately the keys and the values. Each value also knows
+ * where its members end, so that siblings are found by jumping over them.
+ *
+ * Child values are handed out as views to the indexed input sharing the index,
+ * so splitting them further is a lookup instead of scanning them again.
+ */
+final class StructuralIndex {
+    private final char[] chars;
+    private final CharArraySlice source;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    /**
+     * For each value, the index of the first value after its members.
+     */
+    private int[] nexts = new int[16];
+    private int size;
+
+    private StructuralIndex(char[] chars) {
+        this.chars = chars;
+        this.source = new CharArraySlice(chars, 0, chars.length, this);
+    }
+
+    /**
+     * Inputs at least tapeThreshold chars long are indexed in two stages from a {@link StructuralTape},
+     * shorter ones in a single pass with the scanner.
+     *
+     * Anything the tape can't be walked over, from syntax errors to single-quoted strings,
+     * is indexed again with the scanner, which then also reports the exact error.
+     */
+    static StructuralIndex build(JSONScanner s, int tapeThreshold) {
+        if (s.end - s.pos >= tapeThreshold) {
+            StructuralTape tape = StructuralTape.scan(s.buf, s.pos, s.end);
+            if (tape != null) {
+                StructuralIndex ret = new StructuralIndex(s.buf);
+                if (ret.walk(tape, s.end)) {
+                    return ret;
+                }
+            }
+        }
+        StructuralIndex ret = new StructuralIndex(s.buf);
+        ret.value(s);
+        s.expectEnd();
+        return ret;
+    }
+
+    /**
+     * @param tapeThreshold see {@link #build(JSONScanner, int)}
+     */
+    static JSONStr[] toArray(JSONStr json, int tapeThreshold) {
+        CharSequence cs = json.subSequence(0, json.length());
+        StructuralIndex index = indexOf(cs);
+        int i = index == null ? -1 : index.find((CharArraySlice) cs);
+        if (i == -1) {
+            index = build(JSONScanner.of(json), tapeThreshold);
+            i = 0;
+        }
+        return index.array(i);
+    }
+
+    /**
+     * @param uniqueKeys whether a duplicate key is an error, instead of the last one winning.
+     * @param tapeThreshold see {@link #build(JSONScanner, int)}
+     */
+    static Map<String, JSONStr> toMap(JSONStr json, boolean uniqueKeys, int tapeThreshold) {
+        CharSequence cs = json.subSequence(0, json.length());
+        StructuralIndex index = indexOf(cs);
+        int i = index == null ? -1 : index.find((CharArraySlice) cs);
+        if (i == -1) {
+            index = build(JSONScanner.of(json), tapeThreshold);
+            i = 0;
+        }
+        return index.object(i, uniqueKeys);
+    }
+
+    /**
+     * Members are matched by their names in place, without materializing the other members.
+     * An object not yet indexed is indexed first like in {@link #toArray(JSONStr, int)}, so that
+     * the members, and any objects nested in them, are split by lookup instead of scanning them again.
+     * @param uniqueKeys whether a duplicate of a given member is an error, instead of the last one winning.
+     * @param tapeThreshold see {@link #build(JSONScanner, int)}
+     */
+    static JSONStr[] toMembers(JSONStr json, JSONNames names, boolean uniqueKeys, int tapeThreshold) {
+        CharSequence cs = json.subSequence(0, json.length());
+        StructuralIndex index = indexOf(cs);
+        int i = index == null ? -1 : index.find((CharArraySlice) cs);
+        if (i == -1) {
+            index = build(JSONScanner.of(json), tapeThreshold);
+            i = 0;
+        }
+        return index.members(i, names, uniqueKeys);
+    }
+
+    private static StructuralIndex indexOf(CharSequence cs) {
+        return cs instanceof CharArraySlice ? ((CharArraySlice) cs).index : null;
+    }
+
+    /**
+     * @return the index of the value with exactly the extent of the slice, or -1.
+     */
+    private int find(CharArraySlice slice) {
+        int i = Arrays.binarySearch(starts, 0, size, slice.start);
+        return i >= 0 && ends[i] == slice.end ? i : -1;
+    }
+
+    private JSONStr[] array(int i) {
+        if (chars[starts[i]] != '[') {
+            // reports the error
+            return new JSONScanner(chars, starts[i], ends[i]).readArray();
+        }
+        int count = 0;
+        for (int j = i + 1; j < nexts[i]; j = nexts[j]) {
+            count++;
+        }
+        JSONStr[] ret = new JSONStr[count];
+        count = 0;
+        for (int j = i + 1; j < nexts[i]; j = nexts[j]) {
+            ret[count++] = view(j);
+        }
+        return ret;
+    }
+
+    private Map<String, JSONStr> object(int i, boolean uniqueKeys) {
+        if (chars[starts[i]] != '{') {
+            // reports the error
+            return new JSONScanner(chars, starts[i], ends[i]).readObject(uniqueKeys);
+        }
+        Map<String,JSONStr> ret = new LinkedHashMap<String,JSONStr>();
+        for (int j = i + 1; j < nexts[i]; j = nexts[j + 1]) {
+            String key = new JSONScanner(chars, starts[j], ends[j]).readString();
+            if (ret.put(key, view(j + 1)) != null && uniqueKeys) {
+                throw new JSONSyntaxException("Duplicate key \"" + key + "\" at position " + starts[j]);
+            }
+        }
+        return ret;
+    }
+
+    private JSONStr[] members(int i, JSONNames names, boolean uniqueKeys) {
+        if (chars[starts[i]] != '{') {
+            // reports the error
+            return new JSONScanner(chars, starts[i], ends[i]).readMembers(names, uniqueKeys);
+        }
+        JSONStr[] ret = new JSONStr[names.size()];
+        for (int j = i + 1; j < nexts[i]; j = nexts[j + 1]) {
+            int n = name(j, names);
+            if (n >= 0) {
+                if (ret[n] != null && uniqueKeys) {
+                    throw new JSONSyntaxException("Duplicate key \"" + names.get(n) + "\" at position " + starts[j]);
+                }
+                ret[n] = view(j + 1);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return index of the given key in the names, matched without building a String unless it has escapes.
+     */
+    private int name(int key, JSONNames names) {
+        int start = starts[key] + 1;
+        int last = ends[key] - 1;
+        for (int p = start; p < last; ++p) {
+            if (chars[p] == '\\') {
+                return names.indexOf(new JSONScanner(chars, starts[key], ends[key]).readString());
+            }
+        }
+        return names.indexOf(chars, start, last - start);
+    }
+
+    private JSONStr view(int i) {
+        return new JSONStr(source, starts[i], ends[i] - starts[i]);
+    }
+
+    private int add(int start) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            nexts = Arrays.copyOf(nexts, size * 2);
+        }
+        starts[size] = start;
+        return size++;
+    }
+
+    /**
+     * Skips a value like {@link JSONScanner#skipAny()}, recording it and its members.
+     */
+    private void value(JSONScanner s) {
+        int c = s.peek();
+        int i = add(s.pos);
+        if (c == '[') {
+            s.pos++;
+            if (!s.consume(']')) {
+                do {
+                    value(s);
+                } while (s.consume(','));
+                s.expect(']');
+            }
+        } else if (c == '{') {
+            s.pos++;
+            if (!s.consume('}')) {
+                do {
+                    c = s.peek();
+                    if (c != '"' && c != '\'') {
+                        throw s.error("Expected a key");
+                    }
+                    int key = add(s.pos);
+                    s.skipString();
+                    ends[key] = s.pos;
+                    nexts[key] = size;
+                    s.expect(':');
+                    value(s);
+                } while (s.consume(','));
+                s.expect('}');
+            }
+        } else {
+            s.skipAny();
+        }
+        ends[i] = s.pos;
+        nexts[i] = size;
+    }
+
+    // stage 2 state, only while walking a tape
+    private int[] tape;
+    private int tapeSize;
+    private int tapeEnd;
+    private int t;
+    private JSONScanner scalars;
+
+    /**
+     * Stage 2: walks a tape like {@link #value(JSONScanner)} walks the input,
+     * validating the numbers and literals in between.
+     * @return false if the input isn't valid.
+     */
+    private boolean walk(StructuralTape structurals, int end) {
+        tape = structurals.positions;
+        tapeSize = structurals.size;
+        tapeEnd = end;
+        t = 0;
+        scalars = new JSONScanner(chars, 0, 0);
+        boolean ret = tapeValue() && t == tapeSize;
+        tape = null;
+        scalars = null;
+        return ret;
+    }
+
+    /**
+     * @return the char at the current tape position, or -1 at the end of the tape.
+     */
+    private int token() {
+        return t < tapeSize ? chars[tape[t]] : -1;
+    }
+
+    private boolean consumeToken(char c) {
+        if (token() == c) {
+            t++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean tapeValue() {
+        int c = token();
+        if (c == -1) {
+            return false;
+        }
+        int i = add(tape[t]);
+        if (consumeToken('[')) {
+            if (!consumeToken(']')) {
+                do {
+                    if (!tapeValue()) {
+                        return false;
+                    }
+                } while (consumeToken(','));
+                if (!consumeToken(']')) {
+                    return false;
+                }
+            }
+        } else if (consumeToken('{')) {
+            if (!consumeToken('}')) {
+                do {
+                    if (token() != '"') {
+                        return false;
+                    }
+                    int key = add(tape[t]);
+                    ends[key] = tape[t + 1] + 1;
+                    nexts[key] = size;
+                    t += 2;
+                    if (!consumeToken(':') || !tapeValue()) {
+                        return false;
+                    }
+                } while (consumeToken(','));
+                if (!consumeToken('}')) {
+                    return false;
+                }
+            }
+        } else if (c == '"') {
+            // the closing quote is always next
+            t += 2;
+        } else if (c == ']' || c == '}' || c == ':' || c == ',') {
+            return false;
+        } else {
+            // a number or a literal, followed by nothing but whitespace up to the next structural char
+            JSONScanner s = scalars;
+            s.pos = tape[t];
+            s.end = t + 1 < tapeSize ? tape[t + 1] : tapeEnd;
+            try {
+                s.skipAny();
+            } catch (JSONSyntaxException e) {
+                return false;
+            }
+            int valueEnd = s.pos;
+            if (s.peek() != -1) {
+                return false;
+            }
+            t++;
+            ends[i] = valueEnd;
+            nexts[i] = size;
+            return true;
+        }
+        ends[i] = tape[t - 1] + 1;
+        nexts[i] = size;
+        return true;
+    }
+}
@@ -0,0 +1,187 @@
+package fi.solita.utils.serialization.impl;
+
+import java.util.Arrays;
+
+/**
+ * Positions of the structural chars of a JSON input, found 64 chars at a time with
+ * bitmasks as in simdjson (Langdale, Lemire: Parsing Gigabytes of JSON per Second):
+ * the brackets, braces, colons and commas outside strings, both quotes of each string,
+ * and the first char of each number and literal.
+ *
+ * Each block is first classified to one bitmask per char class. Escaped chars are
+ * then found from the runs of backslashes, and the insides of strings with a prefix
+ * xor over the unescaped quotes, carrying the state over to the next block.
+ * Nothing but the strings is validated here, the rest is left to whoever walks the tape.
+ */
+final class StructuralTape {
+    private static final int QUOTE = 1;
+    private static final int BACKSLASH = 2;
+    private static final int OPERATOR = 4;
+    private static final int WHITESPACE = 8;
+    /**
+     * Control chars and single quotes, which are seldom in the input except as whitespace,
+     * but invalid in a string or not supported outside one.
+     */
+    private static final int RARE = 16;
+
+    private static final int[] CLASSES = new int[128];
+    static {
+        for (int c = 0; c < 0x20; ++c) {
+            CLASSES[c] = RARE;
+        }
+        for (char c: "{}[]:,".toCharArray()) {
+            CLASSES[c] |= OPERATOR;
+        }
+        for (char c: " \t\n\r".toCharArray()) {
+            CLASSES[c] |= WHITESPACE;
+        }
+        CLASSES['"'] |= QUOTE;
+        CLASSES['\\'] |= BACKSLASH;
+        CLASSES['\''] |= RARE;
+    }
+
+    private static final long EVEN_BITS = 0x5555555555555555L;
+
+    final int[] positions;
+    final int size;
+
+    private StructuralTape(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /**
+     * @return the structural positions, or null if a string is invalid or unterminated,
+     *         or if single quotes are used outside strings.
+     */
+    static StructuralTape scan(char[] buf, int start, int end) {
+        int[] positions = new int[Math.max(16, (end - start) / 8)];
+        int size = 0;
+
+        // state carried over from the previous block
+        long escapedCarry = 0;
+        long inStringCarry = 0;
+        long scalarCarry = 0;
+
+        for (int base = start; base < end; base += 64) {
+            int len = Math.min(64, end - base);
+
+            long quote = 0, backslash = 0, operator = 0, whitespace = 0, rare = 0;
+            for (int i = 0; i < len; ++i) {
+                char c = buf[base + i];
+                if (c < 128) {
+                    int k = CLASSES[c];
+                    if (k != 0) {
+                        long bit = 1L << i;
+                        quote |= -(k & QUOTE) & bit;
+                        backslash |= -(k >> 1 & 1) & bit;
+                        operator |= -(k >> 2 & 1) & bit;
+                        whitespace |= -(k >> 3 & 1) & bit;
+                        rare |= -(k >> 4 & 1) & bit;
+                    }
+                }
+            }
+
+            // chars preceded by an odd number of backslashes
+            backslash &= ~escapedCarry;
+            long followsEscape = backslash << 1 | escapedCarry;
+            long oddSequenceStarts = backslash & ~EVEN_BITS & ~followsEscape;
+            long sequencesStartingOnEvenBits = oddSequenceStarts + backslash;
+            escapedCarry = unsignedLess(sequencesStartingOnEvenBits, backslash) ? 1 : 0;
+            long escaped = (EVEN_BITS ^ sequencesStartingOnEvenBits << 1) & followsEscape;
+
+            // from each opening quote up to, but not including, its closing quote
+            quote &= ~escaped;
+            long inString = prefixXor(quote) ^ inStringCarry;
+            inStringCarry = inString >> 63;
+
+            long stringBody = inString & ~quote;
+            long outside = ~inString & ~quote;
+            long suspect = rare & (stringBody | outside & ~whitespace);
+            if (suspect != 0 && !validRare(buf, base, suspect, stringBody)) {
+                return null;
+            }
+            if ((escaped & stringBody) != 0 && !validEscapes(buf, base, escaped & stringBody, end)) {
+                return null;
+            }
+
+            long scalar = outside & ~operator & ~whitespace;
+            if (len < 64) {
+                scalar &= (1L << len) - 1;
+            }
+            long scalarStarts = scalar & ~(scalar << 1 | scalarCarry);
+            scalarCarry = scalar >>> 63;
+
+            long structurals = operator & outside | quote | scalarStarts;
+            if (size + Long.bitCount(structurals) > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, size + 64));
+            }
+            while (structurals != 0) {
+                positions[size++] = base + Long.numberOfTrailingZeros(structurals);
+                structurals &= structurals - 1;
+            }
+        }
+        if (inStringCarry != 0) {
+            return null;
+        }
+        return new StructuralTape(positions, size);
+    }
+
+    /**
+     * @return whether the rare chars other than whitespace are single quotes in strings, the only valid ones.
+     */
+    private static boolean validRare(char[] buf, int base, long rare, long stringBody) {
+        for (; rare != 0; rare &= rare - 1) {
+            int i = Long.numberOfTrailingZeros(rare);
+            if (buf[base + i] != '\'' || (stringBody & 1L << i) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether each escaped char is valid, and each 'u' followed by 4 hex digits.
+     */
+    private static boolean validEscapes(char[] buf, int base, long escaped, int end) {
+        for (; escaped != 0; escaped &= escaped - 1) {
+            int p = base + Long.numberOfTrailingZeros(escaped);
+            switch (buf[p]) {
+                case '"': case '\'': case '\\': case '/':
+                case 'b': case 'f': case 'n': case 'r': case 't':
+                    continue;
+                case 'u':
+                    if (p + 4 >= end) {
+                        return false;
+                    }
+                    for (int i = 1; i <= 4; ++i) {
+                        char c = buf[p + i];
+                        if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F')) {
+                            return false;
+                        }
+                    }
+                    continue;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Each bit becomes the xor of itself and all the lower bits.
+     */
+    private static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+
+    private static boolean unsignedLess(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+}
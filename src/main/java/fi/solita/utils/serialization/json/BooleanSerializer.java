@@ -0,0 +1,44 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * A serializer for primitive booleans, writing without boxing.
+ */
+public abstract class BooleanSerializer extends JSONWritingSerializer<Boolean> {
+
+    public abstract void write(JSONWriter out, boolean value) throws IOException;
+
+    @Override
+    public void write(JSONWriter out, Boolean value) throws IOException {
+        write(out, value.booleanValue());
+    }
+
+    /**
+     * Resolves the given serializer to a primitive one, adapting it to box each value if it isn't one.
+     */
+    public static final BooleanSerializer primitive(Serializer<JSON,? super Boolean,JSONStr> serializer) {
+        final JSONWritingSerializer<Boolean> writer = JSONWritingSerializer.of(serializer);
+        if (writer instanceof BooleanSerializer) {
+            return (BooleanSerializer) writer;
+        }
+        return new BooleanSerializer() {
+            @Override
+            public void write(JSONWriter out, boolean value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public JSONStr serialize(JSON format, Boolean object) {
+                return writer.serialize(format, object);
+            }
+
+            @Override
+            public String toString() {
+                return writer.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * A serializer for primitive doubles, writing without boxing.
+ */
+public abstract class DoubleSerializer extends JSONWritingSerializer<Double> {
+
+    public abstract void write(JSONWriter out, double value) throws IOException;
+
+    @Override
+    public void write(JSONWriter out, Double value) throws IOException {
+        write(out, value.doubleValue());
+    }
+
+    /**
+     * Resolves the given serializer to a primitive one, adapting it to box each value if it isn't one.
+     */
+    public static final DoubleSerializer primitive(Serializer<JSON,? super Double,JSONStr> serializer) {
+        final JSONWritingSerializer<Double> writer = JSONWritingSerializer.of(serializer);
+        if (writer instanceof DoubleSerializer) {
+            return (DoubleSerializer) writer;
+        }
+        return new DoubleSerializer() {
+            @Override
+            public void write(JSONWriter out, double value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public JSONStr serialize(JSON format, Double object) {
+                return writer.serialize(format, object);
+            }
+
+            @Override
+            public String toString() {
+                return writer.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package fi.solita.utils.serialization.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a class {@code <Dto>JSONSD} next to the annotated class, with factory methods
+ * returning a {@link JSONSD} for it, when compiled with
+ * {@link fi.solita.utils.serialization.codegen.JSONSDProcessor}.
+ *
+ * The members of the JSON object are the parameters of the constructor (the one with the most
+ * parameters), each read from a non-private field or getter of the same name.
+ * Members of type String, boxed or primitive numbers, Boolean, BigInteger or BigDecimal
+ * default to the corresponding {@link JSONSD} constants, others are given as parameters.
+ *
+ * The result is equivalent to {@code JSONSD.object(Dto_.$Fields(), ..., Dto_.$)},
+ * without the intermediate tuples and field lists.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateJSONSD {
+}
@@ -0,0 +1,90 @@
+package fi.solita.utils.serialization.json;
+
+import java.util.Collection;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+
+/**
+ * Helpers for the code generated from {@link GenerateJSONSD}, keeping the results
+ * identical to those of {@link JSONDeserialization#objectUnsafe}. Not meant to be used directly.
+ */
+public abstract class GeneratedSupport {
+    private GeneratedSupport() {
+    }
+
+    /**
+     * The (non-null) value of a member to serialize.
+     */
+    public static final <T> T get(Object owner, T target, String name) {
+        if (target == null) {
+            throw new NullPointerException("target: " + name + " for owner: " + owner + " was null");
+        }
+        return target;
+    }
+
+    public static final void checkOwner(Object owner) {
+        if (owner == null) {
+            throw new NullPointerException("owner was null");
+        }
+    }
+
+    /**
+     * @return the values of the given members of the given object, or null if it's not an object.
+     */
+    public static final JSONStr[] members(JSON format, JSONStr json, JSONNames names) {
+        try {
+            return format.toMembers(json, names);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static final <T> Either<Failure<T>,T> notAnObject(JSONStr json) {
+        return Either.left(Failure.<T>of(null, "Error reading Map from: " + json));
+    }
+
+    /**
+     * Skips the current value, which is not an object.
+     */
+    public static final <T> Either<Failure<T>,T> notAnObject(JSONReader in) {
+        Either<Failure<T>,T> ret = Either.left(Failure.<T>of(null, "Error reading Map from: " + in.peek()));
+        in.skipValue();
+        return ret;
+    }
+
+    /**
+     * @param position where the object started in the input of a {@link JSONReader}.
+     */
+    public static final <T> Either<Failure<T>,T> notFound(String name, long position) {
+        return Either.left(Failure.<T>of(null, "Key '" + name + "' not found from object at position " + position));
+    }
+
+    public static final <T> Either<Failure<T>,T> notFound(String name, JSONStr json) {
+        return Either.left(Failure.<T>of(null, "Key '" + name + "' not found from object: " + json));
+    }
+
+    public static final <T> Either<Failure<T>,T> member(JSON format, JSONStr[] values, int index, String name, JSONStr json, Deserializer<JSON,T,JSONStr> deserializer) {
+        JSONStr value = values[index];
+        return value == null ? GeneratedSupport.<T>notFound(name, json) : deserializer.deserialize(format, value);
+    }
+
+    /**
+     * @return the value, or the partial result of a failure.
+     */
+    public static final <T> T partial(Either<Failure<T>,T> value) {
+        return value.isRight() ? value.right.get() : value.left.get().partialResult;
+    }
+
+    /**
+     * Adds the errors of a failed value to the given errors.
+     */
+    public static final void addErrors(Collection<Either<Exception,Object>> errors, Either<? extends Failure<?>,?> value) {
+        if (value.isLeft()) {
+            for (Either<Exception,Object> error: value.left.get().errors) {
+                errors.add(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * A serializer for primitive ints, writing without boxing.
+ */
+public abstract class IntSerializer extends JSONWritingSerializer<Integer> {
+
+    public abstract void write(JSONWriter out, int value) throws IOException;
+
+    @Override
+    public void write(JSONWriter out, Integer value) throws IOException {
+        write(out, value.intValue());
+    }
+
+    /**
+     * Resolves the given serializer to a primitive one, adapting it to box each value if it isn't one.
+     */
+    public static final IntSerializer primitive(Serializer<JSON,? super Integer,JSONStr> serializer) {
+        final JSONWritingSerializer<Integer> writer = JSONWritingSerializer.of(serializer);
+        if (writer instanceof IntSerializer) {
+            return (IntSerializer) writer;
+        }
+        return new IntSerializer() {
+            @Override
+            public void write(JSONWriter out, int value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public JSONStr serialize(JSON format, Integer object) {
+                return writer.serialize(format, object);
+            }
+
+            @Override
+            public String toString() {
+                return writer.toString();
+            }
+        };
+    }
+}
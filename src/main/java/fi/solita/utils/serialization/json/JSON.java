@@ -1,10 +1,28 @@
 package fi.solita.utils.serialization.json;
 
+import static fi.solita.utils.functional.Collections.newList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import fi.solita.utils.functional.Either;
+import fi.solita.utils.functional.Option;
 import fi.solita.utils.serialization.Deserializer;
 import fi.solita.utils.serialization.Deserializer.Failure;
 import fi.solita.utils.serialization.Serialization;
@@ -19,6 +37,24 @@ public abstract class JSON implements Serialization<JSON,JSONStr> {
     public abstract JSONStr toJSON(boolean object);
     public abstract JSONStr toJSON(double object);
     public abstract JSONStr toJSON(BigInteger object);
+    
+    /**
+     * Shortest decimal rounding back to the same float, instead of widening to double.
+     */
+    public JSONStr toJSON(float object) {
+        if (Float.isInfinite(object) || Float.isNaN(object)) {
+            return toJSON((double) object);
+        }
+        return new JSONStr(ShortestDecimal.toString(object));
+    }
+    
+    /**
+     * Integers are written the same way by all implementations.
+     */
+    public JSONStr toJSON(long object) {
+        return new JSONStr(Long.toString(object));
+    }
+    
     public abstract JSONStr toJSON(BigDecimal object);
     public abstract JSONStr toJSON(Iterable<JSONStr> object);
     public abstract JSONStr toJSON(Map<String,JSONStr> object);
@@ -28,14 +64,297 @@ public abstract class JSON implements Serialization<JSON,JSONStr> {
     public abstract double              toDouble(JSONStr json);
     public abstract BigInteger          toBigInteger(JSONStr json);
     public abstract BigDecimal          toBigDecimal(JSONStr json);
+    
+    /**
+     * Override this to parse floats without rounding twice through a double.
+     */
+    public float toFloat(JSONStr json) {
+        return (float) toDouble(json);
+    }
+    
+    /**
+     * Override this to parse integers without {@link BigInteger}.
+     * @throws ArithmeticException if the value doesn't fit in a long.
+     */
+    public long toLong(JSONStr json) {
+        return longValue(toBigInteger(json));
+    }
+    
+    static long longValue(BigInteger value) {
+        if (value.bitLength() > 63) {
+            throw new ArithmeticException("Number out of range for long: " + value);
+        }
+        return value.longValue();
+    }
     public abstract JSONStr[]           toArray(JSONStr json);
     public abstract Map<String,JSONStr> toMap(JSONStr json);
     
+    /**
+     * The values of the given members of an object, or null for members it doesn't have.
+     * Override this to skip the other members without materializing their names or values.
+     * @return values in the order of the names.
+     */
+    public JSONStr[] toMembers(JSONStr json, JSONNames names) {
+        JSONStr[] ret = new JSONStr[names.size()];
+        for (Map.Entry<String,JSONStr> member: toMap(json).entrySet()) {
+            int i = names.indexOf(member.getKey());
+            if (i >= 0) {
+                ret[i] = member.getValue();
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Writes a value to a {@link JSONWriter}. Override these to avoid
+     * building an intermediate {@link JSONStr} for each value.
+     */
+    protected void write(JSONWriter out, String object) throws IOException {
+        out.append(toJSON(object));
+    }
+    
+    protected void write(JSONWriter out, boolean object) throws IOException {
+        out.append(toJSON(object));
+    }
+    
+    /**
+     * Finite values are written as the shortest decimal rounding back to the same value,
+     * the same way by all implementations. Others are left for {@link #toJSON(double)} to reject.
+     */
+    protected void write(JSONWriter out, double object) throws IOException {
+        if (Double.isInfinite(object) || Double.isNaN(object)) {
+            out.append(toJSON(object));
+        } else {
+            out.appendDecimal(object);
+        }
+    }
+    
+    protected void write(JSONWriter out, float object) throws IOException {
+        if (Float.isInfinite(object) || Float.isNaN(object)) {
+            out.append(toJSON(object));
+        } else {
+            out.appendDecimal(object);
+        }
+    }
+    
+    protected void write(JSONWriter out, long object) throws IOException {
+        out.appendDigits(object);
+    }
+    
+    protected void write(JSONWriter out, BigInteger object) throws IOException {
+        out.append(toJSON(object));
+    }
+    
+    protected void write(JSONWriter out, BigDecimal object) throws IOException {
+        out.append(toJSON(object));
+    }
+    
     public final <T> JSONStr serialize(Serializer<JSON,T,JSONStr> serializer, T object) {
         return serializer.serialize(this, object);
     }
     
+    /**
+     * Serializes directly to the given output, without building the whole result in memory first.
+     */
+    public final <T> void serialize(Serializer<JSON,T,JSONStr> serializer, T object, Appendable out) throws IOException {
+        JSONWriter writer = new JSONWriter(this, out);
+        writer.value(serializer, object);
+        writer.flush();
+    }
+    
+    /**
+     * Serializes directly to the given output as UTF-8.
+     */
+    public final <T> void serialize(Serializer<JSON,T,JSONStr> serializer, T object, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, Charset.forName("UTF-8"));
+        serialize(serializer, object, writer);
+    }
+    
+    /**
+     * A pull reader over the given input, if this implementation provides one.
+     */
+    public Option<JSONReader> reader(JSONStr json) {
+        return Option.None();
+    }
+    
+    /**
+     * A pull reader directly over the given UTF-8 input, if this implementation provides one.
+     */
+    public Option<JSONReader> reader(JSONBytes json) {
+        return Option.None();
+    }
+    
+    /**
+     * A pull reader reading incrementally from the given input, if this implementation provides one.
+     */
+    public Option<JSONReader> reader(Reader in) {
+        return Option.None();
+    }
+    
+    /**
+     * Reads in place with a {@link JSONReader} if this implementation provides one.
+     */
     public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, JSONStr json) {
+        Option<JSONReader> reader = reader(json);
+        if (reader.isDefined()) {
+            return deserialize(deserializer, reader.get());
+        }
         return deserializer.deserialize(this, json);
     }
+    
+    /**
+     * Reads the UTF-8 input directly if this implementation provides a reader for it,
+     * otherwise decodes it to a {@link JSONStr} first.
+     */
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, JSONBytes json) {
+        Option<JSONReader> reader;
+        try {
+            reader = reader(json);
+        } catch (JSONSyntaxException e) {
+            return Either.left(Failure.<T>of(null, e));
+        }
+        if (reader.isDefined()) {
+            return deserialize(deserializer, reader.get());
+        }
+        return deserialize(deserializer, new JSONStr(json.toString()));
+    }
+    
+    /**
+     * Deserializes a whole document from the given reader.
+     * Malformed input results in a {@link Failure} without a partial result.
+     */
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, JSONReader reader) {
+        try {
+            Either<Failure<T>,T> ret = reader.value(deserializer);
+            reader.endDocument();
+            return ret;
+        } catch (JSONSyntaxException e) {
+            return Either.left(Failure.<T>of(null, e));
+        }
+    }
+    
+    /**
+     * Deserializes incrementally from the given input, if this implementation provides
+     * a reader for it, so that the whole document is never held in memory.
+     * Otherwise the input is read fully first.
+     * 
+     * @throws IOException if reading the input fails. Malformed input results in a {@link Failure}.
+     */
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, Reader in) throws IOException {
+        Option<JSONReader> reader = reader(in);
+        if (!reader.isDefined()) {
+            return deserialize(deserializer, readFully(in));
+        }
+        try {
+            Either<Failure<T>,T> ret = reader.get().value(deserializer);
+            reader.get().endDocument();
+            return ret;
+        } catch (JSONInputException e) {
+            if (e.getCause() instanceof CharacterCodingException) {
+                return Either.left(Failure.<T>of(null, e));
+            }
+            throw e.getCause();
+        } catch (JSONSyntaxException e) {
+            return Either.left(Failure.<T>of(null, e));
+        }
+    }
+    
+    /**
+     * Deserializes incrementally from the given UTF-8 input.
+     * @see #deserialize(Deserializer, Reader)
+     */
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, InputStream in) throws IOException {
+        return deserialize(deserializer, new InputStreamReader(in, utf8Decoder()));
+    }
+    
+    /**
+     * Deserializes incrementally from the given UTF-8 input.
+     * @see #deserialize(Deserializer, Reader)
+     */
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONStr> deserializer, ReadableByteChannel in) throws IOException {
+        return deserialize(deserializer, Channels.newReader(in, utf8Decoder(), -1));
+    }
+    
+    /**
+     * Lazily deserializes the elements of a top-level array, one per {@link Iterator#next()}.
+     * Malformed input ends the iteration with a {@link Failure}.
+     */
+    public final <T> Iterator<Either<Failure<T>,T>> iterate(final Deserializer<JSON,T,JSONStr> deserializer, JSONStr json) {
+        Option<JSONReader> reader = reader(json);
+        if (reader.isDefined()) {
+            return new JSONArrayIterator<T>(deserializer, reader.get());
+        }
+        final JSONStr[] elements;
+        try {
+            elements = toArray(json);
+        } catch (RuntimeException e) {
+            return newList(Either.<Failure<T>,T>left(Failure.<T>of(null, e))).iterator();
+        }
+        return new Iterator<Either<Failure<T>,T>>() {
+            private int i;
+            
+            @Override
+            public boolean hasNext() {
+                return i < elements.length;
+            }
+            
+            @Override
+            public Either<Failure<T>,T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return deserializer.deserialize(JSON.this, elements[i++]);
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    /**
+     * Lazily deserializes the elements of a top-level array, reading the input incrementally
+     * if this implementation provides a reader for it. Memory use is then bounded by a single element.
+     * 
+     * @throws IOException if reading the input fails before iteration.
+     *         During iteration, failures are thrown as {@link JSONInputException}.
+     */
+    public final <T> Iterator<Either<Failure<T>,T>> iterate(Deserializer<JSON,T,JSONStr> deserializer, Reader in) throws IOException {
+        Option<JSONReader> reader = reader(in);
+        if (reader.isDefined()) {
+            return new JSONArrayIterator<T>(deserializer, reader.get());
+        }
+        return iterate(deserializer, readFully(in));
+    }
+    
+    /**
+     * @see #iterate(Deserializer, Reader)
+     */
+    public final <T> Iterator<Either<Failure<T>,T>> iterate(Deserializer<JSON,T,JSONStr> deserializer, InputStream in) throws IOException {
+        return iterate(deserializer, new InputStreamReader(in, utf8Decoder()));
+    }
+    
+    /**
+     * @see #iterate(Deserializer, Reader)
+     */
+    public final <T> Iterator<Either<Failure<T>,T>> iterate(Deserializer<JSON,T,JSONStr> deserializer, ReadableByteChannel in) throws IOException {
+        return iterate(deserializer, Channels.newReader(in, utf8Decoder(), -1));
+    }
+    
+    private static JSONStr readFully(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            sb.append(buf, 0, n);
+        }
+        return new JSONStr(sb);
+    }
+    
+    private static CharsetDecoder utf8Decoder() {
+        return Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
 }
@@ -0,0 +1,89 @@
+package fi.solita.utils.serialization.json;
+
+import java.nio.charset.CharacterCodingException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+
+/**
+ * Reads the elements of a top-level array one at a time.
+ *
+ * Malformed input ends the iteration with a {@link Failure} without a partial result.
+ * Failing to read the underlying input is thrown as {@link JSONInputException}.
+ */
+final class JSONArrayIterator<T> implements Iterator<Either<Failure<T>,T>> {
+    private final Deserializer<JSON,T,JSONStr> deserializer;
+    private final JSONReader reader;
+
+    private boolean started;
+    private boolean done;
+    private Failure<T> error;
+
+    JSONArrayIterator(Deserializer<JSON,T,JSONStr> deserializer, JSONReader reader) {
+        this.deserializer = deserializer;
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (done) {
+            return false;
+        }
+        if (error != null) {
+            return true;
+        }
+        try {
+            if (!started) {
+                started = true;
+                if (reader.peek() != JSONReader.Token.BEGIN_ARRAY) {
+                    error = Failure.of(null, "Expected an Array but was " + reader.peek());
+                    return true;
+                }
+                reader.beginArray();
+            }
+            if (reader.hasNext()) {
+                return true;
+            }
+            reader.endArray();
+            reader.endDocument();
+            done = true;
+            return false;
+        } catch (JSONSyntaxException e) {
+            error = fail(e);
+            return true;
+        }
+    }
+
+    @Override
+    public Either<Failure<T>,T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        if (error != null) {
+            done = true;
+            return Either.left(error);
+        }
+        try {
+            return reader.value(deserializer);
+        } catch (JSONSyntaxException e) {
+            done = true;
+            return Either.left(fail(e));
+        }
+    }
+
+    private Failure<T> fail(JSONSyntaxException e) {
+        if (e instanceof JSONInputException && !(e.getCause() instanceof CharacterCodingException)) {
+            done = true;
+            throw e;
+        }
+        return Failure.<T>of(null, e);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
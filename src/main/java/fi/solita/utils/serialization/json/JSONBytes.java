@@ -0,0 +1,103 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * JSON serial format as UTF-8 bytes. A read-only view to a range of a byte array,
+ * so that buffers can be passed to and from the network without transcoding.
+ */
+public final class JSONBytes implements Serializable {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    public JSONBytes(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public JSONBytes(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException(offset + "+" + length);
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * The remaining bytes of the given buffer. Heap buffers are used in place,
+     * direct buffers are copied. The position of the buffer is not changed.
+     */
+    public static JSONBytes of(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return new JSONBytes(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new JSONBytes(bytes);
+    }
+
+    /**
+     * The backing array. Must not be modified.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, offset, length).asReadOnlyBuffer();
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, Charset.forName("UTF-8"));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        JSONBytes other = (JSONBytes) obj;
+        if (length != other.length)
+            return false;
+        for (int i = 0; i < length; ++i) {
+            if (bytes[offset + i] != other.bytes[other.offset + i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.SD;
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * Adapts a {@link JSONStr} based serializer/deserializer to UTF-8 bytes.
+ *
+ * Output is encoded while writing, without building the result as chars first.
+ * Input is read as described in {@link JSON#deserialize(Deserializer, JSONBytes)}.
+ */
+public final class JSONBytesSD<TYPE> implements SD<JSON,TYPE,JSONBytes> {
+    public final Serializer<JSON,? super TYPE,JSONStr> serializer;
+    public final Deserializer<JSON,? extends TYPE,JSONStr> deserializer;
+
+    public JSONBytesSD(Serializer<JSON,? super TYPE,JSONStr> serializer, Deserializer<JSON,? extends TYPE,JSONStr> deserializer) {
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    public static final <T> JSONBytesSD<T> of(SD<JSON,T,JSONStr> sd) {
+        return new JSONBytesSD<T>(sd, sd);
+    }
+
+    @Override
+    public JSONBytes serialize(JSON format, TYPE object) {
+        UTF8Output out = new UTF8Output(256);
+        write(format, object, out);
+        return out.toBytes();
+    }
+
+    /**
+     * Serializes to the remaining space of the given buffer, and moves its position
+     * past the written bytes.
+     *
+     * @throws java.nio.BufferOverflowException if the result doesn't fit, leaving the position
+     *         unchanged. The bytes past the position may have been overwritten.
+     */
+    public void serialize(JSON format, TYPE object, ByteBuffer target) {
+        int position = target.position();
+        try {
+            write(format, object, new UTF8Output(target));
+        } catch (RuntimeException e) {
+            // a direct target may already have part of the output
+            target.position(position);
+            throw e;
+        }
+    }
+
+    private void write(JSON format, TYPE object, UTF8Output out) {
+        JSONWriter writer = new JSONWriter(format, out);
+        try {
+            writer.value(serializer, object);
+            writer.flush();
+        } catch (IOException e) {
+            // UTF8Output doesn't throw
+            throw new RuntimeException(e);
+        }
+        out.finish();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Either<Failure<TYPE>,TYPE> deserialize(JSON format, JSONBytes serial) {
+        return format.deserialize((Deserializer<JSON,TYPE,JSONStr>)deserializer, serial);
+    }
+
+    /**
+     * Deserializes the remaining bytes of the given buffer. The position of the buffer is not changed.
+     */
+    public Either<Failure<TYPE>,TYPE> deserialize(JSON format, ByteBuffer serial) {
+        return deserialize(format, JSONBytes.of(serial));
+    }
+}
@@ -12,13 +12,17 @@ import static fi.solita.utils.functional.FunctionalImpl.flatMap;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 import fi.solita.utils.codegen.MetaNamedMember;
 import fi.solita.utils.functional.Apply;
@@ -61,34 +65,63 @@ import fi.solita.utils.serialization.Util.FieldDeserializer;
 
 public abstract class JSONDeserialization {
 
-    public static final JSONDeserializer<String> string = new JSONDeserializer<String>() {
+    public static final JSONDeserializer<String> string = new JSONReadingDeserializer<String>() {
         @Override
         public String deserializeOptimistic(JSON format, JSONStr json) {
             return format.toString(json);
         }
         
+        @Override
+        protected String readOptimistic(JSONReader in) {
+            return in.nextString();
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.string";
         };
     };
 
-    public static final JSONDeserializer<Boolean> bool = new JSONDeserializer<Boolean>() {
+    public static final JSONDeserializer<Boolean> bool = new JSONReadingDeserializer<Boolean>() {
         @Override
         public Boolean deserializeOptimistic(JSON format, JSONStr json) {
             return format.toBoolean(json);
         }
         
+        @Override
+        protected Boolean readOptimistic(JSONReader in) {
+            return in.nextBoolean();
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.boolean";
         }
     };
 
-    public static final JSONDeserializer<Integer> integer = new JSONDeserializer<Integer>() {
+    private static int intValue(long value) {
+        if ((int) value != value) {
+            throw new ArithmeticException("Number out of range for int: " + value);
+        }
+        return (int) value;
+    }
+
+    private static short shortValue(long value) {
+        if ((short) value != value) {
+            throw new ArithmeticException("Number out of range for short: " + value);
+        }
+        return (short) value;
+    }
+
+    public static final JSONDeserializer<Integer> integer = new JSONReadingDeserializer<Integer>() {
         @Override
         public Integer deserializeOptimistic(JSON format, JSONStr json) {
-            return format.toBigInteger(json).intValue();
+            return intValue(format.toLong(json));
+        }
+        
+        @Override
+        protected Integer readOptimistic(JSONReader in) {
+            return intValue(in.nextLong());
         }
         
         @Override
@@ -97,10 +130,15 @@ public abstract class JSONDeserialization {
         }
     };
 
-    public static final JSONDeserializer<Long> lng = new JSONDeserializer<Long>() {
+    public static final JSONDeserializer<Long> lng = new JSONReadingDeserializer<Long>() {
         @Override
         public Long deserializeOptimistic(JSON format, JSONStr json) {
-            return format.toBigInteger(json).longValue();
+            return format.toLong(json);
+        }
+        
+        @Override
+        protected Long readOptimistic(JSONReader in) {
+            return in.nextLong();
         }
         
         @Override
@@ -109,10 +147,15 @@ public abstract class JSONDeserialization {
         }
     };
 
-    public static final JSONDeserializer<Short> shrt = new JSONDeserializer<Short>() {
+    public static final JSONDeserializer<Short> shrt = new JSONReadingDeserializer<Short>() {
         @Override
         public Short deserializeOptimistic(JSON format, JSONStr json) {
-            return format.toBigInteger(json).shortValue();
+            return shortValue(format.toLong(json));
+        }
+        
+        @Override
+        protected Short readOptimistic(JSONReader in) {
+            return shortValue(in.nextLong());
         }
         
         @Override
@@ -121,10 +164,15 @@ public abstract class JSONDeserialization {
         }
     };
 
-    public static final JSONDeserializer<Float> flt = new JSONDeserializer<Float>() {
+    public static final JSONDeserializer<Float> flt = new JSONReadingDeserializer<Float>() {
         @Override
         public Float deserializeOptimistic(JSON format, JSONStr json) {
-            return (float)format.toDouble(json);
+            return format.toFloat(json);
+        }
+        
+        @Override
+        protected Float readOptimistic(JSONReader in) {
+            return in.nextFloat();
         }
         
         @Override
@@ -133,48 +181,68 @@ public abstract class JSONDeserialization {
         }
     };
 
-    public static final JSONDeserializer<Double> dbl = new JSONDeserializer<Double>() {
+    public static final JSONDeserializer<Double> dbl = new JSONReadingDeserializer<Double>() {
         @Override
         public Double deserializeOptimistic(JSON format, JSONStr json) {
             return format.toDouble(json);
         }
         
+        @Override
+        protected Double readOptimistic(JSONReader in) {
+            return in.nextDouble();
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.double";
         }
     };
     
-    public static final JSONDeserializer<Byte> byt = new JSONDeserializer<Byte>() {
+    public static final JSONDeserializer<Byte> byt = new JSONReadingDeserializer<Byte>() {
         @Override
         public Byte deserializeOptimistic(JSON format, JSONStr json) {
             return format.toString(json).getBytes(Charset.forName("ISO-8859-1"))[0];
         }
         
+        @Override
+        protected Byte readOptimistic(JSONReader in) {
+            return in.nextString().getBytes(Charset.forName("ISO-8859-1"))[0];
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.double";
         }
     };
 
-    public static final JSONDeserializer<BigInteger> bigint = new JSONDeserializer<BigInteger>() {
+    public static final JSONDeserializer<BigInteger> bigint = new JSONReadingDeserializer<BigInteger>() {
         @Override
         public BigInteger deserializeOptimistic(JSON format, JSONStr json) {
             return format.toBigInteger(json);
         }
         
+        @Override
+        protected BigInteger readOptimistic(JSONReader in) {
+            return in.nextBigInteger();
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.biginteger";
         }
     };
 
-    public static final JSONDeserializer<BigDecimal> bigdecimal = new JSONDeserializer<BigDecimal>() {
+    public static final JSONDeserializer<BigDecimal> bigdecimal = new JSONReadingDeserializer<BigDecimal>() {
         @Override
         public BigDecimal deserializeOptimistic(JSON format, JSONStr json) {
             return format.toBigDecimal(json);
         }
         
+        @Override
+        protected BigDecimal readOptimistic(JSONReader in) {
+            return in.nextBigDecimal();
+        }
+        
         @Override
         public String toString() {
             return "JSONDeserialization.bigdecimal";
@@ -182,7 +250,8 @@ public abstract class JSONDeserialization {
     };
 
     public static final <T> JSONDeserializer<Option<T>> option(final Deserializer<JSON, ? extends T, JSONStr> deserializer) {
-        return new JSONDeserializer<Option<T>>() {
+        final JSONReadingDeserializer<T> reader = JSONReadingDeserializer.of(deserializer);
+        return new JSONReadingDeserializer<Option<T>>() {
             private final Transformer<Failure<T>,Failure<Option<T>>> failureMapper = new Transformer<Failure<T>,Failure<Option<T>>>() {
                 @Override
                 public Failure<Option<T>> transform(Failure<T> source) {
@@ -201,6 +270,17 @@ public abstract class JSONDeserialization {
                 }
             }
             
+            @Override
+            public Either<Failure<Option<T>>,Option<T>> read(JSONReader in) {
+                if (in.peek() == JSONReader.Token.NULL) {
+                    in.nextNull();
+                    return Either.right(Option.<T>None());
+                } else {
+                    Either<Failure<T>, T> res = reader.read(in);
+                    return res.bimap(failureMapper, Option_.<T>Some());
+                }
+            }
+            
             @Override
             public String toString() {
                 return "JSONDeserialization.option";
@@ -251,7 +331,8 @@ public abstract class JSONDeserialization {
     }
     
     public static final <T> JSONDeserializer<T[]> array(final Deserializer<JSON, ? extends T, JSONStr> deserializer, final Class<T> clazz) {
-        return new JSONDeserializer<T[]>() {
+        final JSONDeserializer<List<T>> elements = list(deserializer);
+        return new JSONReadingDeserializer<T[]>() {
             private final Transformer<Failure<List<T>>,Failure<T[]>> failureMapper = new Transformer<Failure<List<T>>,Failure<T[]>>() {
                 @Override
                 public Failure<T[]> transform(Failure<List<T>> source) {
@@ -261,7 +342,14 @@ public abstract class JSONDeserialization {
             
             @Override
             public Either<Failure<T[]>,T[]> deserialize(JSON format, JSONStr json) {
-                return list(deserializer).deserialize(format, json).bimap(
+                return elements.deserialize(format, json).bimap(
+                    failureMapper,
+                    Collections_.<T>newArray16().ap(clazz));
+            }
+            
+            @Override
+            public Either<Failure<T[]>,T[]> read(JSONReader in) {
+                return in.value(elements).bimap(
                     failureMapper,
                     Collections_.<T>newArray16().ap(clazz));
             }
@@ -274,7 +362,17 @@ public abstract class JSONDeserialization {
     }
     
     public static final <T> JSONDeserializer<List<T>> list(final Deserializer<JSON, ? extends T, JSONStr> deserializer) {
-        return new JSONDeserializer<List<T>>() {
+        return list(deserializer, null);
+    }
+    
+    /**
+     * Deserializes large arrays in parallel on the given executor. The array is first scanned
+     * for element boundaries, and the elements are then deserialized in batches.
+     * The result, including a possible {@link Failure}, is the same as with {@link #list(Deserializer)}.
+     */
+    public static final <T> JSONDeserializer<List<T>> list(final Deserializer<JSON, ? extends T, JSONStr> deserializer, final ExecutorService executor) {
+        final JSONReadingDeserializer<T> reader = JSONReadingDeserializer.of(deserializer);
+        return new JSONReadingDeserializer<List<T>>() {
             private final Transformer<Either<Failure<T>,T>, T> getPartials = new Transformer<Either<Failure<T>,T>, T>() {
                 @Override
                 public T transform(Either<Failure<T>, T> source) {
@@ -289,6 +387,7 @@ public abstract class JSONDeserialization {
                 }
             };
             
+            @SuppressWarnings("unchecked")
             @Override
             public Either<Failure<List<T>>,List<T>> deserialize(final JSON format, JSONStr json) {
                 JSONStr[] jsonArray;
@@ -298,14 +397,47 @@ public abstract class JSONDeserialization {
                     return Either.left(Failure.<List<T>>of(null, "Error reading Array from: " + json));
                 }
                 
+                if (executor != null) {
+                    return result(Parallel.deserialize(format, (Deserializer<JSON, T, JSONStr>)deserializer, Arrays.asList(jsonArray), false, executor));
+                }
+                
                 List<Either<Failure<T>, T>> deserializedArray = newList(Functional.map(jsonArray, new Transformer<JSONStr,Either<Failure<T>,T>>() {
-                    @SuppressWarnings("unchecked")
                     @Override
                     public Either<Failure<T>,T> transform(JSONStr source) {
                         return ((Deserializer<JSON, T, JSONStr>)deserializer).deserialize(format, source);
                     }
                 }));
+                return result(deserializedArray);
+            }
+            
+            @Override
+            public Either<Failure<List<T>>,List<T>> read(JSONReader in) {
+                if (in.peek() != JSONReader.Token.BEGIN_ARRAY) {
+                    Either<Failure<List<T>>,List<T>> ret = Either.left(Failure.<List<T>>of(null, "Error reading Array from: " + in.peek()));
+                    in.skipValue();
+                    return ret;
+                }
+                if (executor != null) {
+                    // scan the element boundaries first, without deserializing
+                    List<JSONStr> elements = new ArrayList<JSONStr>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        elements.add(in.nextValue());
+                    }
+                    in.endArray();
+                    return result(Parallel.deserialize(in.format, (Deserializer<JSON, T, JSONStr>)deserializer, elements, true, executor));
+                }
                 
+                List<Either<Failure<T>, T>> deserializedArray = new ArrayList<Either<Failure<T>, T>>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    deserializedArray.add(reader.read(in));
+                }
+                in.endArray();
+                return result(deserializedArray);
+            }
+            
+            private Either<Failure<List<T>>,List<T>> result(List<Either<Failure<T>, T>> deserializedArray) {
                 if (forall(Either_.isRight, deserializedArray)) {
                     return Either.right(newList(Functional.map(Either_.<T>right().andThen(Option_.<T>get()), deserializedArray)));
                 } else {
@@ -333,7 +465,8 @@ public abstract class JSONDeserialization {
     }
     
     public static final <T> JSONDeserializer<Set<T>> set(final Deserializer<JSON, ? extends T, JSONStr> deserializer) {
-        return new JSONDeserializer<Set<T>>() {
+        final JSONDeserializer<List<T>> elements = list(deserializer);
+        return new JSONReadingDeserializer<Set<T>>() {
             Transformer<Failure<List<T>>,Failure<Set<T>>> failureMapper = new Transformer<Failure<List<T>>,Failure<Set<T>>>() {
                 @Override
                 public Failure<Set<T>> transform(Failure<List<T>> source) {
@@ -343,7 +476,14 @@ public abstract class JSONDeserialization {
             
             @Override
             public Either<Failure<Set<T>>,Set<T>> deserialize(final JSON format, JSONStr json) {
-                return list(deserializer).deserialize(format, json).bimap(
+                return elements.deserialize(format, json).bimap(
+                        failureMapper,
+                        Collections_.<T>newSet10());
+            }
+            
+            @Override
+            public Either<Failure<Set<T>>,Set<T>> read(JSONReader in) {
+                return in.value(elements).bimap(
                         failureMapper,
                         Collections_.<T>newSet10());
             }
@@ -357,10 +497,18 @@ public abstract class JSONDeserialization {
     
     public static final <T extends Comparable<T>> JSONDeserializer<SortedSet<T>> sortedSet(final Deserializer<JSON,T,JSONStr> deserializer) {
         final JSONDeserializer<Set<T>> des = JSONDeserialization.set(deserializer);
-        return new JSONDeserializer<SortedSet<T>>() {
+        return new JSONReadingDeserializer<SortedSet<T>>() {
             @Override
             public Either<fi.solita.utils.serialization.Deserializer.Failure<SortedSet<T>>, SortedSet<T>> deserialize(JSON format, JSONStr serial) {
-                Either<Deserializer.Failure<Set<T>>, Set<T>> res = des.deserialize(format, serial);
+                return sorted(des.deserialize(format, serial));
+            }
+            
+            @Override
+            public Either<fi.solita.utils.serialization.Deserializer.Failure<SortedSet<T>>, SortedSet<T>> read(JSONReader in) {
+                return sorted(in.value(des));
+            }
+            
+            private Either<fi.solita.utils.serialization.Deserializer.Failure<SortedSet<T>>, SortedSet<T>> sorted(Either<Deserializer.Failure<Set<T>>, Set<T>> res) {
                 if (res.isLeft()) {
                     Deserializer.Failure<Set<T>> f = res.left.get();
                     return Either.left(Deserializer.Failure.<SortedSet<T>>of(f.partialResult != null ? new TreeSet<T>(f.partialResult) : null, f.errors));
@@ -371,7 +519,17 @@ public abstract class JSONDeserialization {
     }
     
     public static final <T> JSONDeserializer<Map<String, T>> map(final Deserializer<JSON, ? extends T, JSONStr> deserializer) {
-        return new JSONDeserializer<Map<String, T>>() {
+        return map(deserializer, null);
+    }
+    
+    /**
+     * Deserializes the values of large objects in parallel on the given executor.
+     * The result, including a possible {@link Failure}, is the same as with {@link #map(Deserializer)}.
+     * @see #list(Deserializer, ExecutorService)
+     */
+    public static final <T> JSONDeserializer<Map<String, T>> map(final Deserializer<JSON, ? extends T, JSONStr> deserializer, final ExecutorService executor) {
+        final JSONReadingDeserializer<T> reader = JSONReadingDeserializer.of(deserializer);
+        return new JSONReadingDeserializer<Map<String, T>>() {
             private final Transformer<Map.Entry<String, Either<Failure<T>,T>>, Map.Entry<String, T>> getPartials = new Transformer<Map.Entry<String, Either<Failure<T>,T>>, Map.Entry<String, T>>() {
                 @Override
                 public Map.Entry<String, T> transform(Entry<String, Either<Failure<T>, T>> source) {
@@ -394,6 +552,7 @@ public abstract class JSONDeserialization {
                 }
             };
             
+            @SuppressWarnings("unchecked")
             @Override
             public Either<Failure<Map<String,T>>,Map<String,T>> deserialize(final JSON format, JSONStr json) {
                 final Map<String,JSONStr> jsonObject;
@@ -403,14 +562,62 @@ public abstract class JSONDeserialization {
                     return Either.left(Failure.<Map<String,T>>of(null, "Error reading Map from: " + json));
                 }
                 
+                if (executor != null) {
+                    List<String> keys = newList(jsonObject.keySet());
+                    List<Either<Failure<T>, T>> values = Parallel.deserialize(format, (Deserializer<JSON, T, JSONStr>)deserializer, newList(jsonObject.values()), false, executor);
+                    Map<String, Either<Failure<T>, T>> deserializedMap = new LinkedHashMap<String, Either<Failure<T>, T>>();
+                    for (int i = 0; i < keys.size(); ++i) {
+                        deserializedMap.put(keys.get(i), values.get(i));
+                    }
+                    return result(deserializedMap);
+                }
+                
                 Map<String, Either<Failure<T>, T>> deserializedMap = Functional.map(jsonObject, new Transformer<Map.Entry<String,JSONStr>, Map.Entry<String, Either<Failure<T>,T>>>() {
-                    @SuppressWarnings("unchecked")
                     @Override
                     public Map.Entry<String, Either<Failure<T>,T>> transform(Map.Entry<String,JSONStr> source) {
                         return Pair.of(source.getKey(), ((Deserializer<JSON, T, JSONStr>)deserializer).deserialize(format, source.getValue()));
                     }
                 });
+                return result(deserializedMap);
+            }
+            
+            @SuppressWarnings("unchecked")
+            @Override
+            public Either<Failure<Map<String,T>>,Map<String,T>> read(JSONReader in) {
+                if (in.peek() != JSONReader.Token.BEGIN_OBJECT) {
+                    Either<Failure<Map<String,T>>,Map<String,T>> ret = Either.left(Failure.<Map<String,T>>of(null, "Error reading Map from: " + in.peek()));
+                    in.skipValue();
+                    return ret;
+                }
+                if (executor != null) {
+                    // scan the member boundaries first, without deserializing
+                    List<String> keys = new ArrayList<String>();
+                    List<JSONStr> elements = new ArrayList<JSONStr>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        keys.add(in.nextName());
+                        elements.add(in.nextValue());
+                    }
+                    in.endObject();
+                    List<Either<Failure<T>, T>> values = Parallel.deserialize(in.format, (Deserializer<JSON, T, JSONStr>)deserializer, elements, true, executor);
+                    Map<String, Either<Failure<T>, T>> deserializedMap = new LinkedHashMap<String, Either<Failure<T>, T>>();
+                    for (int i = 0; i < keys.size(); ++i) {
+                        deserializedMap.put(keys.get(i), values.get(i));
+                    }
+                    return result(deserializedMap);
+                }
                 
+                Map<String, Either<Failure<T>, T>> deserializedMap = new LinkedHashMap<String, Either<Failure<T>, T>>();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String key = in.nextName();
+                    deserializedMap.put(key, reader.read(in));
+                }
+                in.endObject();
+                return result(deserializedMap);
+            }
+            
+            private Either<Failure<Map<String,T>>,Map<String,T>> result(Map<String, Either<Failure<T>, T>> deserializedMap) {
                 if (forall(Either_.isRight, deserializedMap.values())) {
                     return Either.right(Functional.map(deserializedMap, successMapper));
                 } else {
@@ -1140,8 +1347,24 @@ public abstract class JSONDeserialization {
         return objectUnsafe(newList(field1, field2, field3, field4, field5, field6, field7, field8, field9, field10, field11, field12, field13, field14, field15, field16, field17, field18, field19, field20, field21), constructor);
     }
     
+    /**
+     * The fields are resolved once to a flat plan of names and deserializers,
+     * and incoming names are matched with a precomputed {@link JSONNames} index.
+     * Other members are skipped, see {@link JSON#toMembers(JSONStr, JSONNames)}.
+     */
+    @SuppressWarnings("unchecked")
     public static final <T> JSONDeserializer<T> objectUnsafe(final Iterable<? extends FieldDeserializer<JSON,? extends Object,?,JSONStr>> fields, final Apply<? extends Tuple,T> constructor) {
-        return new JSONDeserializer<T>() {
+        List<FieldDeserializer<JSON,?,Object,JSONStr>> fieldList = newList((Iterable<FieldDeserializer<JSON,?,Object,JSONStr>>)fields);
+        final String[] names = new String[fieldList.size()];
+        final Deserializer<JSON,Object,JSONStr>[] deserializers = new Deserializer[fieldList.size()];
+        final JSONReadingDeserializer<Object>[] readers = new JSONReadingDeserializer[fieldList.size()];
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = fieldList.get(i).getName();
+            deserializers[i] = fieldList.get(i).getDeserializer();
+            readers[i] = JSONReadingDeserializer.of(deserializers[i]);
+        }
+        final JSONNames index = new JSONNames(names);
+        return new JSONReadingDeserializer<T>() {
             private final Transformer<Either<? extends Failure<?>,Object>, Object> getPartials = new Transformer<Either<? extends Failure<?>,Object>, Object>() {
                 @Override
                 public Object transform(Either<? extends Failure<?>, Object> source) {
@@ -1158,28 +1381,60 @@ public abstract class JSONDeserialization {
             
             @Override
             public Either<Failure<T>,T> deserialize(final JSON format, JSONStr json) {
-                @SuppressWarnings("unchecked")
-                Apply<Tuple,T> constr = (Apply<Tuple,T>)constructor;
-                
-                final Map<String,JSONStr> jsonObject;
+                final JSONStr[] values;
                 try {
-                    jsonObject = format.toMap(json);
+                    values = format.toMembers(json, index);
                 } catch (Exception e) {
                     return Either.left(Failure.<T>of(null, "Error reading Map from: " + json));
                 }
                 
-                @SuppressWarnings("unchecked")
-                List<Either<? extends Failure<?>, Object>> deserializedFields = newList(Functional.map((Iterable<? extends FieldDeserializer<JSON, ? super T,Object,JSONStr>>)fields, new Transformer<FieldDeserializer<JSON, ? super T,Object,JSONStr>, Either<? extends Failure<?>,Object>>() {
-                    @Override
-                    public Either<? extends Failure<?>, Object> transform(FieldDeserializer<JSON, ? super T,Object,JSONStr> source) {
-                        JSONStr value = jsonObject.get(source.getName());
-                        return value == null ? Either.left(Failure.of(null, "Key '" + source.getName() + "' not found from object: " + jsonObject))
-                                             : source.apply(format, value);
+                List<Either<? extends Failure<?>, Object>> deserializedFields = new ArrayList<Either<? extends Failure<?>, Object>>(names.length);
+                for (int i = 0; i < names.length; ++i) {
+                    JSONStr value = values[i];
+                    deserializedFields.add(value == null ? Either.<Failure<Object>,Object>left(Failure.of(null, "Key '" + names[i] + "' not found from object: " + json))
+                                                         : deserializers[i].deserialize(format, value));
+                }
+                return result(deserializedFields);
+            }
+            
+            @Override
+            public Either<Failure<T>,T> read(JSONReader in) {
+                if (in.peek() != JSONReader.Token.BEGIN_OBJECT) {
+                    Either<Failure<T>,T> ret = Either.left(Failure.<T>of(null, "Error reading Map from: " + in.peek()));
+                    in.skipValue();
+                    return ret;
+                }
+                Either<? extends Failure<?>, Object>[] deserializedFields = new Either[names.length];
+                long start = in.position();
+                in.beginObject();
+                while (in.hasNext()) {
+                    int i = in.nextName(index);
+                    if (i >= 0) {
+                        deserializedFields[i] = readers[i].read(in);
+                    } else {
+                        in.skipValue();
                     }
-                }));
+                }
+                in.endObject();
+                
+                for (int i = 0; i < names.length; ++i) {
+                    if (deserializedFields[i] == null) {
+                        deserializedFields[i] = Either.left(Failure.of(null, "Key '" + names[i] + "' not found from object at position " + start));
+                    }
+                }
+                return result(Arrays.asList(deserializedFields));
+            }
+            
+            private Either<Failure<T>,T> result(List<Either<? extends Failure<?>, Object>> deserializedFields) {
+                @SuppressWarnings("unchecked")
+                Apply<Tuple,T> constr = (Apply<Tuple,T>)constructor;
                 
                 if (forall(Either_.isRight, deserializedFields)) {
-                    Tuple constructorArgs = Tuple.of(newArray(Object.class, Functional.flatMap(Either_.right(), deserializedFields)));
+                    Object[] values = new Object[deserializedFields.size()];
+                    for (int i = 0; i < values.length; ++i) {
+                        values[i] = deserializedFields.get(i).right.get();
+                    }
+                    Tuple constructorArgs = Tuple.of(values);
                     try {
                         return Either.right(constr.apply(constructorArgs));
                     } catch (Exception e) {
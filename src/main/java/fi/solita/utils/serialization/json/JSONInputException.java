@@ -0,0 +1,19 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+/**
+ * Reading the underlying input failed while deserializing from a stream.
+ * Aborts the whole document like a {@link JSONSyntaxException}.
+ */
+public class JSONInputException extends JSONSyntaxException {
+    public JSONInputException(IOException cause) {
+        super(cause.toString());
+        initCause(cause);
+    }
+    
+    @Override
+    public IOException getCause() {
+        return (IOException) super.getCause();
+    }
+}
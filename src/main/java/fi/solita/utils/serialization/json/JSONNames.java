@@ -0,0 +1,173 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A fixed set of object member names, indexed once so that incoming names can be
+ * matched straight from the input chars, without building a String for each.
+ *
+ * Names are hashed like {@link String#hashCode()} to an open addressing table,
+ * whose size is chosen so that the names don't collide if possible.
+ *
+ * For writing, the names are encoded once per {@link JSON} format,
+ * see {@link JSONWriter#name(JSONNames, int)} and {@link JSONWriter#value(JSONNames, int)}.
+ * The encoded names are not serialized, but encoded again when first needed.
+ */
+public final class JSONNames implements Serializable {
+    private static final int MAX_TABLE_SIZE = 1 << 12;
+
+    private final String[] names;
+    private final char[][] chars;
+    private final int[] table;
+    private final int mask;
+
+    private transient volatile Encoded encoded;
+
+    private static final class Encoded {
+        final JSON format;
+        final String[] values;
+        final String[] names;
+
+        Encoded(JSON format, String[] values, String[] names) {
+            this.format = format;
+            this.values = values;
+            this.names = names;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a name is given more than once.
+     */
+    public JSONNames(String... names) {
+        this.names = names.clone();
+        this.chars = new char[names.length][];
+        for (int i = 0; i < names.length; ++i) {
+            chars[i] = names[i].toCharArray();
+        }
+
+        int size = 2;
+        while (size < 2 * names.length) {
+            size <<= 1;
+        }
+        int[] t = build(size, true);
+        for (int perfectSize = size << 1; t == null && perfectSize <= MAX_TABLE_SIZE; perfectSize <<= 1) {
+            t = build(perfectSize, true);
+        }
+        if (t == null) {
+            t = build(size, false);
+        }
+        this.table = t;
+        this.mask = t.length - 1;
+    }
+
+    /**
+     * @return the table with {@code index+1} of each name in its slot, or null if
+     *         {@code perfect} is requested but some names collide.
+     * @throws IllegalArgumentException if a name is given more than once. Duplicates always
+     *         meet in the same probe sequence, so they are found whichever table is built.
+     */
+    private int[] build(int size, boolean perfect) {
+        int[] t = new int[size];
+        int mask = size - 1;
+        for (int i = 0; i < names.length; ++i) {
+            int slot = spread(names[i].hashCode()) & mask;
+            while (t[slot] != 0) {
+                if (names[t[slot] - 1].equals(names[i])) {
+                    throw new IllegalArgumentException("Duplicate name: " + names[i]);
+                }
+                if (perfect) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+            t[slot] = i + 1;
+        }
+        return t;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String get(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return index of the given name, or -1 if it's not one of these.
+     */
+    public int indexOf(String name) {
+        for (int slot = spread(name.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the name in the given chars, or -1 if it's not one of these.
+     */
+    public int indexOf(char[] buf, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            hash = 31 * hash + buf[i];
+        }
+        for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            char[] name = chars[table[slot] - 1];
+            if (name.length == length && regionMatches(name, buf, offset)) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(char[] name, char[] buf, int offset) {
+        for (int i = 0; i < name.length; ++i) {
+            if (name[i] != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the names encoded as JSON strings by the given format. Only the latest format is cached.
+     */
+    String[] encodedValues(JSON format) {
+        return encoded(format).values;
+    }
+
+    /**
+     * @return the names encoded as JSON strings by the given format, each followed by ':'.
+     */
+    String[] encodedNames(JSON format) {
+        return encoded(format).names;
+    }
+
+    private Encoded encoded(JSON format) {
+        Encoded e = encoded;
+        if (e == null || e.format != format) {
+            String[] values = new String[names.length];
+            String[] encodedNames = new String[names.length];
+            for (int i = 0; i < names.length; ++i) {
+                values[i] = format.toJSON(names[i]).toString();
+                encodedNames[i] = values[i] + ':';
+            }
+            e = new Encoded(format, values, encodedNames);
+            encoded = e;
+        }
+        return e;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+}
@@ -0,0 +1,113 @@
+package fi.solita.utils.serialization.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+
+/**
+ * Cursor-style pull reader over JSON input, provided by low-level {@link JSON}
+ * implementations supporting it. Lets nested deserializers read their values
+ * in place, without building intermediate arrays or maps.
+ *
+ * Malformed input is thrown as {@link JSONSyntaxException}. Reading a value of
+ * an unexpected type throws an {@link IllegalStateException} without consuming anything.
+ */
+public abstract class JSONReader {
+    public static enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+    
+    public final JSON format;
+    
+    protected JSONReader(JSON format) {
+        this.format = format;
+    }
+    
+    /**
+     * @return type of the next value (or name) without consuming it.
+     */
+    public abstract Token peek();
+    
+    public abstract void beginArray();
+    public abstract void endArray();
+    public abstract void beginObject();
+    public abstract void endObject();
+    
+    /**
+     * @return whether the current array or object has more elements.
+     */
+    public abstract boolean hasNext();
+    
+    public abstract String     nextName();
+    
+    /**
+     * Reads the next name, matching it against the given names.
+     * Implementations may do this without building the name as a String.
+     * @return index of the name in the given names, or -1 if it's not one of them.
+     */
+    public int nextName(JSONNames names) {
+        return names.indexOf(nextName());
+    }
+    
+    public abstract String     nextString();
+    public abstract boolean    nextBoolean();
+    public abstract double     nextDouble();
+    public abstract BigInteger nextBigInteger();
+    public abstract BigDecimal nextBigDecimal();
+    
+    /**
+     * Override this to parse floats without rounding twice through a double.
+     */
+    public float nextFloat() {
+        return (float) nextDouble();
+    }
+    
+    /**
+     * Override this to parse integers without {@link BigInteger}.
+     * @throws ArithmeticException if the value doesn't fit in a long.
+     */
+    public long nextLong() {
+        return JSON.longValue(nextBigInteger());
+    }
+    
+    public abstract void       nextNull();
+    
+    /**
+     * @return the next value of any type as-is.
+     */
+    public abstract JSONStr nextValue();
+    
+    public abstract void skipValue();
+    
+    /**
+     * @return current position in the input, to detect whether anything has been consumed.
+     */
+    public abstract long position();
+    
+    /**
+     * Verifies that nothing but whitespace follows the top-level value.
+     */
+    public abstract void endDocument();
+    
+    /**
+     * Reads the next value with the given deserializer, in place if the deserializer supports it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Either<Failure<T>,T> value(Deserializer<JSON,T,JSONStr> deserializer) {
+        Deserializer<JSON,? extends T,JSONStr> d = deserializer;
+        while (d instanceof JSONSD) {
+            d = ((JSONSD<? extends T>)d).deserializer;
+        }
+        if (d instanceof JSONReadingDeserializer) {
+            return ((JSONReadingDeserializer<T>)d).read(this);
+        }
+        return ((Deserializer<JSON,T,JSONStr>)d).deserialize(format, nextValue());
+    }
+    
+    protected IllegalStateException unexpected(Token expected) {
+        return new IllegalStateException("Expected " + expected + " but was " + peek());
+    }
+}
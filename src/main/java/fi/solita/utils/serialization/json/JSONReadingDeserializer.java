@@ -0,0 +1,69 @@
+package fi.solita.utils.serialization.json;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+
+/**
+ * A deserializer able to read its value in place from a {@link JSONReader}.
+ */
+public abstract class JSONReadingDeserializer<TARGET_TYPE> extends JSONDeserializer<TARGET_TYPE> {
+    
+    /**
+     * if you override this, be sure to wrap all content errors to a {@link Failure},
+     * leave the reader after the value, and let {@link JSONSyntaxException}s through.
+     */
+    public Either<Failure<TARGET_TYPE>, TARGET_TYPE> read(JSONReader in) {
+        long start = in.position();
+        try {
+            return Either.right(readOptimistic(in));
+        } catch (JSONSyntaxException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (in.position() == start) {
+                in.skipValue();
+            }
+            return Either.left(Failure.of((TARGET_TYPE)null, e));
+        }
+    }
+    
+    /**
+     * Override this to assume reading succeeds, and possible errors are
+     * indicated by throwing exceptions. {@link #read} will wrap the exception
+     * to a {@link Failure}.
+     */
+    protected TARGET_TYPE readOptimistic(JSONReader in) {
+        throw new UnsupportedOperationException("implement this or override read!");
+    }
+    
+    /**
+     * Resolves the deserializer to read with once, instead of on each {@link JSONReader#value(Deserializer)}:
+     * {@link JSONSD} wrappers are unwrapped, and other deserializers are adapted to read the whole value first.
+     */
+    @SuppressWarnings("unchecked")
+    public static final <T> JSONReadingDeserializer<T> of(Deserializer<JSON,? extends T,JSONStr> deserializer) {
+        Deserializer<JSON,? extends T,JSONStr> d = deserializer;
+        while (d instanceof JSONSD) {
+            d = ((JSONSD<? extends T>)d).deserializer;
+        }
+        if (d instanceof JSONReadingDeserializer) {
+            return (JSONReadingDeserializer<T>)d;
+        }
+        final Deserializer<JSON,T,JSONStr> other = (Deserializer<JSON,T,JSONStr>)d;
+        return new JSONReadingDeserializer<T>() {
+            @Override
+            public Either<Failure<T>,T> read(JSONReader in) {
+                return other.deserialize(in.format, in.nextValue());
+            }
+            
+            @Override
+            public Either<Failure<T>,T> deserialize(JSON format, JSONStr serial) {
+                return other.deserialize(format, serial);
+            }
+            
+            @Override
+            public String toString() {
+                return other.toString();
+            }
+        };
+    }
+}
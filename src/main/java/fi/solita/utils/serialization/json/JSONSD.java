@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
 
 import fi.solita.utils.codegen.MetaNamedMember;
 import fi.solita.utils.functional.Apply;
@@ -97,7 +98,8 @@ public final class JSONSD<TYPE> extends JSONDeserializer<TYPE> implements JSONSe
     }
     
     public static final <E extends Enum<E>> SD<JSON,E,JSONStr> Enum(Class<E> enumClass) {
-        return Util.delegate(string, JSONSD_.enumName, JSONSD_.<E>newEnum().ap(enumClass));
+        SD<JSON,E,JSONStr> delegate = Util.delegate(string, JSONSD_.enumName, JSONSD_.<E>newEnum().ap(enumClass));
+        return new JSONSD<E>(JSONSerialization.enumeration(enumClass), JSONReadingDeserializer.of(delegate));
     }
     
     public static final SD<JSON,Class<?>,JSONStr> clazz = Util.delegate(JSONSD.string, JSONSD_.className, JSONSD_.classForName);
@@ -130,6 +132,14 @@ public final class JSONSD<TYPE> extends JSONDeserializer<TYPE> implements JSONSe
         return new JSONSD<List<T>>(JSONSerialization.list(sd), JSONDeserialization.list(sd));
     }
     
+    /**
+     * @see JSONSerialization#list(Serializer, ExecutorService)
+     * @see JSONDeserialization#list(Deserializer, ExecutorService)
+     */
+    public static final <T> JSONSD<List<T>> list(SD<JSON,T,JSONStr> sd, ExecutorService executor) {
+        return new JSONSD<List<T>>(JSONSerialization.list(sd, executor), JSONDeserialization.list(sd, executor));
+    }
+    
     public static final <T> JSONSD<Set<T>> set(SD<JSON,T,JSONStr> sd) {
         return new JSONSD<Set<T>>(JSONSerialization.set(sd), JSONDeserialization.set(sd));
     }
@@ -142,6 +152,14 @@ public final class JSONSD<TYPE> extends JSONDeserializer<TYPE> implements JSONSe
         return new JSONSD<Map<String,T>>(JSONSerialization.map(sd), JSONDeserialization.map(sd));
     }
     
+    /**
+     * @see JSONSerialization#map(Serializer, ExecutorService)
+     * @see JSONDeserialization#map(Deserializer, ExecutorService)
+     */
+    public static final <T> JSONSD<Map<String, T>> map(SD<JSON,T,JSONStr> sd, ExecutorService executor) {
+        return new JSONSD<Map<String, T>>(JSONSerialization.map(sd, executor), JSONDeserialization.map(sd, executor));
+    }
+    
     public static final <T1> JSONSD<Tuple1<T1>> tuple(
             SD<JSON,T1,JSONStr> sd1) {
         return new JSONSD<Tuple1<T1>>(
@@ -1,25 +1,24 @@
 package fi.solita.utils.serialization.json;
 
-import static fi.solita.utils.functional.Collections.newMap;
-import static fi.solita.utils.functional.FunctionalA.zip;
-
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
 
 import fi.solita.utils.codegen.MetaNamedMember;
 import fi.solita.utils.functional.Either;
-import fi.solita.utils.functional.Functional;
-import fi.solita.utils.functional.FunctionalM;
 import fi.solita.utils.functional.Option;
 import fi.solita.utils.functional.Pair;
-import fi.solita.utils.functional.Transformer;
 import fi.solita.utils.functional.Tuple;
 import fi.solita.utils.functional.Tuple1;
 import fi.solita.utils.functional.Tuple10;
@@ -48,23 +47,38 @@ import fi.solita.utils.serialization.Util;
 import fi.solita.utils.serialization.Util.FieldSerializer;
 
 public abstract class JSONSerialization {
+    
+    /**
+     * How many elements {@link #iterator(Serializer)} writes between flushes.
+     */
+    public static final int DEFAULT_FLUSH_INTERVAL = 1000;
 
-    public static final JSONSerializer<String> string = new JSONSerializer<String>() {
+    public static final JSONSerializer<String> string = new JSONWritingSerializer<String>() {
         @Override
         public JSONStr serialize(JSON format, String object) {
             return format.toJSON(object);
         }
         
+        @Override
+        public void write(JSONWriter out, String object) throws IOException {
+            out.value(object);
+        }
+        
         @Override
         public String toString() {
             return "JSONSerialization.string";
         }
     };
 
-    public static final JSONSerializer<Boolean> bool = new JSONSerializer<Boolean>() {
+    public static final BooleanSerializer primitiveBool = new BooleanSerializer() {
         @Override
         public JSONStr serialize(JSON format, Boolean object) {
-            return format.toJSON(object);
+            return format.toJSON(object.booleanValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, boolean value) throws IOException {
+            out.value(value);
         }
         
         @Override
@@ -73,10 +87,15 @@ public abstract class JSONSerialization {
         }
     };
 
-    public static final JSONSerializer<Integer> integer = new JSONSerializer<Integer>() {
+    public static final IntSerializer primitiveInteger = new IntSerializer() {
         @Override
         public JSONStr serialize(JSON format, Integer object) {
-            return format.toJSON(BigInteger.valueOf(object));
+            return format.toJSON(object.longValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, int value) throws IOException {
+            out.value((long) value);
         }
         
         @Override
@@ -85,10 +104,15 @@ public abstract class JSONSerialization {
         }
     };
 
-    public static final JSONSerializer<Long> lng = new JSONSerializer<Long>() {
+    public static final LongSerializer primitiveLng = new LongSerializer() {
         @Override
         public JSONStr serialize(JSON format, Long object) {
-            return format.toJSON(BigInteger.valueOf(object));
+            return format.toJSON(object.longValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, long value) throws IOException {
+            out.value(value);
         }
         
         @Override
@@ -97,85 +121,161 @@ public abstract class JSONSerialization {
         }
     };
 
-    public static final JSONSerializer<Short> shrt = new JSONSerializer<Short>() {
+    public static final DoubleSerializer primitiveDbl = new DoubleSerializer() {
         @Override
-        public JSONStr serialize(JSON format, Short object) {
-            return format.toJSON(BigInteger.valueOf(object));
+        public JSONStr serialize(JSON format, Double object) {
+            return format.toJSON(object.doubleValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, double value) throws IOException {
+            out.value(value);
         }
         
         @Override
         public String toString() {
-            return "JSONSerialization.short";
+            return "JSONSerialization.double";
         }
     };
 
-    public static final JSONSerializer<Float> flt = new JSONSerializer<Float>() {
+    public static final JSONSerializer<Boolean> bool = primitiveBool;
+
+    public static final JSONSerializer<Integer> integer = primitiveInteger;
+
+    public static final JSONSerializer<Long> lng = primitiveLng;
+
+    public static final JSONSerializer<Short> shrt = new JSONWritingSerializer<Short>() {
         @Override
-        public JSONStr serialize(JSON format, Float object) {
-            return format.toJSON(object.doubleValue());
+        public JSONStr serialize(JSON format, Short object) {
+            return format.toJSON(object.longValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, Short object) throws IOException {
+            primitiveInteger.write(out, object.intValue());
         }
         
         @Override
         public String toString() {
-            return "JSONSerialization.float";
+            return "JSONSerialization.short";
         }
     };
 
-    public static final JSONSerializer<Double> dbl = new JSONSerializer<Double>() {
+    public static final JSONSerializer<Float> flt = new JSONWritingSerializer<Float>() {
         @Override
-        public JSONStr serialize(JSON format, Double object) {
-            return format.toJSON(object);
+        public JSONStr serialize(JSON format, Float object) {
+            return format.toJSON(object.floatValue());
+        }
+        
+        @Override
+        public void write(JSONWriter out, Float object) throws IOException {
+            out.value(object.floatValue());
         }
         
         @Override
         public String toString() {
-            return "JSONSerialization.double";
+            return "JSONSerialization.float";
         }
     };
+
+    public static final JSONSerializer<Double> dbl = primitiveDbl;
     
-    public static final JSONSerializer<Byte> byt = new JSONSerializer<Byte>() {
+    public static final JSONSerializer<Byte> byt = new JSONWritingSerializer<Byte>() {
         @Override
         public JSONStr serialize(JSON format, Byte object) {
             return format.toJSON(new String(new byte[]{object}, Charset.forName("ISO-8859-1")));
         }
         
+        @Override
+        public void write(JSONWriter out, Byte object) throws IOException {
+            out.value(new String(new byte[]{object}, Charset.forName("ISO-8859-1")));
+        }
+        
         @Override
         public String toString() {
             return "JSONSerialization.byte";
         }
     };
 
-    public static final JSONSerializer<BigInteger> bigint = new JSONSerializer<BigInteger>() {
+    public static final JSONSerializer<BigInteger> bigint = new JSONWritingSerializer<BigInteger>() {
         @Override
         public JSONStr serialize(JSON format, BigInteger object) {
             return format.toJSON(object);
         }
         
+        @Override
+        public void write(JSONWriter out, BigInteger object) throws IOException {
+            out.value(object);
+        }
+        
         @Override
         public String toString() {
             return "JSONSerialization.biginteger";
         }
     };
 
-    public static final JSONSerializer<BigDecimal> bigdecimal = new JSONSerializer<BigDecimal>() {
+    public static final JSONSerializer<BigDecimal> bigdecimal = new JSONWritingSerializer<BigDecimal>() {
         @Override
         public JSONStr serialize(JSON format, BigDecimal object) {
             return format.toJSON(object);
         }
         
+        @Override
+        public void write(JSONWriter out, BigDecimal object) throws IOException {
+            out.value(object);
+        }
+        
         @Override
         public String toString() {
             return "JSONSerialization.bigdecimal";
         }
     };
 
+    /**
+     * The constants are encoded once per format, instead of each value separately.
+     */
+    public static final <E extends Enum<E>> JSONSerializer<E> enumeration(Class<E> enumClass) {
+        E[] constants = enumClass.getEnumConstants();
+        String[] names = new String[constants.length];
+        for (int i = 0; i < constants.length; ++i) {
+            names[i] = constants[i].name();
+        }
+        final JSONNames encodedNames = new JSONNames(names);
+        return new JSONWritingSerializer<E>() {
+            @Override
+            public JSONStr serialize(JSON format, E object) {
+                return new JSONStr(encodedNames.encodedValues(format)[object.ordinal()]);
+            }
+            
+            @Override
+            public void write(JSONWriter out, E object) throws IOException {
+                out.value(encodedNames, object.ordinal());
+            }
+            
+            @Override
+            public String toString() {
+                return "JSONSerialization.enumeration";
+            }
+        };
+    }
+
     public static final <T> JSONSerializer<Option<T>> option(final Serializer<JSON,? super T,JSONStr> serializer) {
-        return new JSONSerializer<Option<T>>() {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Option<T>>() {
             @Override
             public JSONStr serialize(JSON format, Option<T> object) {
                 return object.isDefined() ? serializer.serialize(format, object.get()) : new JSONStr("null");
             }
             
+            @Override
+            public void write(JSONWriter out, Option<T> object) throws IOException {
+                if (object.isDefined()) {
+                    writer.write(out, object.get());
+                } else {
+                    out.nullValue();
+                }
+            }
+            
             @Override
             public String toString() {
                 return "JSONSerialization.option";
@@ -184,12 +284,23 @@ public abstract class JSONSerialization {
     }
     
     public static final <L,R> JSONSerializer<Either<L,R>> either(final Serializer<JSON,? super L,JSONStr> serializerL, final Serializer<JSON,? super R,JSONStr> serializerR) {
-        return new JSONSerializer<Either<L,R>>() {
+        final JSONWritingSerializer<L> writerL = JSONWritingSerializer.of(serializerL);
+        final JSONWritingSerializer<R> writerR = JSONWritingSerializer.of(serializerR);
+        return new JSONWritingSerializer<Either<L,R>>() {
             @Override
             public JSONStr serialize(JSON format, Either<L,R> object) {
                 return object.isLeft() ? serializerL.serialize(format, object.left.get()) : serializerR.serialize(format, object.right.get());
             }
             
+            @Override
+            public void write(JSONWriter out, Either<L,R> object) throws IOException {
+                if (object.isLeft()) {
+                    writerL.write(out, object.left.get());
+                } else {
+                    writerR.write(out, object.right.get());
+                }
+            }
+            
             @Override
             public String toString() {
                 return "JSONSerialization.either";
@@ -203,15 +314,42 @@ public abstract class JSONSerialization {
     }
 
     public static final <T> JSONSerializer<T[]> array(final Serializer<JSON,? super T,JSONStr> serializer) {
-        return new JSONSerializer<T[]>() {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<T[]>() {
+            @Override
+            public void write(JSONWriter out, T[] objects) throws IOException {
+                out.beginArray();
+                for (T object: objects) {
+                    writer.write(out, object);
+                }
+                out.endArray();
+            }
+            
+            @Override
+            public String toString() {
+                return "JSONSerialization.array";
+            }
+        };
+    }
+    
+    /**
+     * Serializes large arrays in parallel on the given executor. Elements are serialized
+     * in batches to separate buffers, which are then written in order.
+     */
+    public static final <T> JSONSerializer<T[]> array(final Serializer<JSON,? super T,JSONStr> serializer, final ExecutorService executor) {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<T[]>() {
             @Override
-            public JSONStr serialize(final JSON format, T[] object) {
-                return format.toJSON(Functional.map(object, new Transformer<T,JSONStr>() {
-                    @Override
-                    public JSONStr transform(T object) {
-                        return serializer.serialize(format, object);
+            public void write(JSONWriter out, T[] objects) throws IOException {
+                out.beginArray();
+                if (Parallel.worthSplitting(objects.length, executor)) {
+                    Parallel.serialize(out.format, writer, Arrays.asList(objects), out, executor);
+                } else {
+                    for (T object: objects) {
+                        writer.write(out, object);
                     }
-                }));
+                }
+                out.endArray();
             }
             
             @Override
@@ -222,15 +360,52 @@ public abstract class JSONSerialization {
     }
 
     public static final <T> JSONSerializer<Iterable<T>> iterable(final Serializer<JSON,? super T,JSONStr> serializer) {
-        return new JSONSerializer<Iterable<T>>() {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Iterable<T>>() {
+            @Override
+            public void write(JSONWriter out, Iterable<T> objects) throws IOException {
+                out.beginArray();
+                for (T object: objects) {
+                    writer.write(out, object);
+                }
+                out.endArray();
+            }
+            
             @Override
-            public JSONStr serialize(final JSON format, Iterable<T> objects) {
-                return format.toJSON(Functional.map(objects, new Transformer<T,JSONStr>() {
-                    @Override
-                    public JSONStr transform(T object) {
-                        return serializer.serialize(format, object);
+            public String toString() {
+                return "JSONSerialization.iter";
+            }
+        };
+    }
+    
+    /**
+     * Serializes large iterables in parallel on the given executor. The elements are first
+     * collected to a list, unless already in one.
+     * @see #array(Serializer, ExecutorService)
+     */
+    public static final <T> JSONSerializer<Iterable<T>> iterable(final Serializer<JSON,? super T,JSONStr> serializer, final ExecutorService executor) {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Iterable<T>>() {
+            @Override
+            public void write(JSONWriter out, Iterable<T> objects) throws IOException {
+                List<T> elements;
+                if (objects instanceof List && objects instanceof RandomAccess) {
+                    elements = (List<T>) objects;
+                } else {
+                    elements = new ArrayList<T>();
+                    for (T object: objects) {
+                        elements.add(object);
                     }
-                }));
+                }
+                out.beginArray();
+                if (Parallel.worthSplitting(elements.size(), executor)) {
+                    Parallel.serialize(out.format, writer, elements, out, executor);
+                } else {
+                    for (T object: elements) {
+                        writer.write(out, object);
+                    }
+                }
+                out.endArray();
             }
             
             @Override
@@ -240,6 +415,65 @@ public abstract class JSONSerialization {
         };
     }
     
+    /**
+     * Like {@link #iterable(Serializer)}, but additionally flushes the output every {@code flushInterval}
+     * elements, so that the receiving end gets data while long sequences (e.g. database cursors) are still being produced.
+     */
+    public static final <T> JSONSerializer<Iterable<T>> iterable(final Serializer<JSON,? super T,JSONStr> serializer, final int flushInterval) {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Iterable<T>>() {
+            @Override
+            public void write(JSONWriter out, Iterable<T> objects) throws IOException {
+                writeElements(out, writer, objects.iterator(), flushInterval);
+            }
+            
+            @Override
+            public String toString() {
+                return "JSONSerialization.iter";
+            }
+        };
+    }
+    
+    /**
+     * Consumes the iterator, writing each element as soon as it's produced.
+     * Nothing is retained, so any number of elements can be written with constant memory.
+     */
+    public static final <T> JSONSerializer<Iterator<T>> iterator(Serializer<JSON,? super T,JSONStr> serializer) {
+        return iterator(serializer, DEFAULT_FLUSH_INTERVAL);
+    }
+    
+    /**
+     * @see #iterator(Serializer)
+     * @param flushInterval the output is flushed every this many elements.
+     */
+    public static final <T> JSONSerializer<Iterator<T>> iterator(final Serializer<JSON,? super T,JSONStr> serializer, final int flushInterval) {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Iterator<T>>() {
+            @Override
+            public void write(JSONWriter out, Iterator<T> objects) throws IOException {
+                writeElements(out, writer, objects, flushInterval);
+            }
+            
+            @Override
+            public String toString() {
+                return "JSONSerialization.iterator";
+            }
+        };
+    }
+    
+    private static final <T> void writeElements(JSONWriter out, JSONWritingSerializer<T> writer, Iterator<T> objects, int flushInterval) throws IOException {
+        out.beginArray();
+        int count = 0;
+        while (objects.hasNext()) {
+            writer.write(out, objects.next());
+            if (++count == flushInterval) {
+                count = 0;
+                out.flush();
+            }
+        }
+        out.endArray();
+    }
+    
     @SuppressWarnings("unchecked")
     public static final <T> JSONSerializer<Collection<T>> collection(Serializer<JSON,? super T,JSONStr> serializer) {
         return (JSONSerializer<Collection<T>>)(Object)iterable(serializer);
@@ -250,6 +484,14 @@ public abstract class JSONSerialization {
         return (JSONSerializer<List<T>>)(Object)iterable(serializer);
     }
     
+    /**
+     * @see #iterable(Serializer, ExecutorService)
+     */
+    @SuppressWarnings("unchecked")
+    public static final <T> JSONSerializer<List<T>> list(Serializer<JSON,? super T,JSONStr> serializer, ExecutorService executor) {
+        return (JSONSerializer<List<T>>)(Object)iterable(serializer, executor);
+    }
+    
     @SuppressWarnings("unchecked")
     public static final <T> JSONSerializer<Set<T>> set(Serializer<JSON,? super T,JSONStr> serializer) {
         return (JSONSerializer<Set<T>>)(Object)iterable(serializer);
@@ -261,15 +503,16 @@ public abstract class JSONSerialization {
     }
 
     public static final <T> JSONSerializer<Map<String, T>> map(final Serializer<JSON,? super T,JSONStr> serializer) {
-        return new JSONSerializer<Map<String, T>>() {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        return new JSONWritingSerializer<Map<String, T>>() {
             @Override
-            public JSONStr serialize(final JSON format, Map<String, T> objects) {
-                return format.toJSON(FunctionalM.map(objects, new Transformer<Map.Entry<String,T>,Map.Entry<String,JSONStr>>() {
-                    @Override
-                    public Entry<String, JSONStr> transform(Entry<String, T> entry) {
-                        return Pair.of(entry.getKey(), serializer.serialize(format, entry.getValue()));
-                    }
-                }));
+            public void write(JSONWriter out, Map<String, T> objects) throws IOException {
+                out.beginObject();
+                for (Map.Entry<String, T> entry: objects.entrySet()) {
+                    out.name(entry.getKey());
+                    writer.write(out, entry.getValue());
+                }
+                out.endObject();
             }
             
             @Override
@@ -279,16 +522,55 @@ public abstract class JSONSerialization {
         };
     }
     
-    @SuppressWarnings("unchecked")
-    static final JSONStr ser(JSON format, Tuple2<Object, ? extends Serializer<JSON,? extends Object,JSONStr>> t) {
-        return ((Serializer<JSON,Object,JSONStr>)t._2).serialize(format, t._1);
+    /**
+     * Serializes large maps in parallel on the given executor, keeping the iteration order of the map.
+     * @see #array(Serializer, ExecutorService)
+     */
+    public static final <T> JSONSerializer<Map<String, T>> map(final Serializer<JSON,? super T,JSONStr> serializer, final ExecutorService executor) {
+        final JSONWritingSerializer<T> writer = JSONWritingSerializer.of(serializer);
+        final JSONWritingSerializer<Map.Entry<String, T>> member = new JSONWritingSerializer<Map.Entry<String, T>>() {
+            @Override
+            public void write(JSONWriter out, Map.Entry<String, T> entry) throws IOException {
+                out.name(entry.getKey());
+                writer.write(out, entry.getValue());
+            }
+        };
+        return new JSONWritingSerializer<Map<String, T>>() {
+            @Override
+            public void write(JSONWriter out, Map<String, T> objects) throws IOException {
+                out.beginObject();
+                if (Parallel.worthSplitting(objects.size(), executor)) {
+                    Parallel.serialize(out.format, member, new ArrayList<Map.Entry<String, T>>(objects.entrySet()), out, executor);
+                } else {
+                    for (Map.Entry<String, T> entry: objects.entrySet()) {
+                        member.write(out, entry);
+                    }
+                }
+                out.endObject();
+            }
+            
+            @Override
+            public String toString() {
+                return "JSONSerialization.map";
+            }
+        };
     }
     
+    @SuppressWarnings("unchecked")
     private static final <T extends Tuple> JSONSerializer<T> tupleUnsafe(final Serializer<JSON,? extends Object,JSONStr>... serializers) {
-        return new JSONSerializer<T>() {
+        final JSONWritingSerializer<Object>[] writers = new JSONWritingSerializer[serializers.length];
+        for (int i = 0; i < serializers.length; ++i) {
+            writers[i] = JSONWritingSerializer.of((Serializer<JSON,Object,JSONStr>)serializers[i]);
+        }
+        return new JSONWritingSerializer<T>() {
             @Override
-            public JSONStr serialize(JSON format, T object) {
-                return JSONSerialization.iterable(Util.<JSON,JSONStr>id()).serialize(format, Functional.map(JSONSerialization_.ser.ap(format), zip(object.toArray(), serializers)));
+            public void write(JSONWriter out, T object) throws IOException {
+                Object[] values = object.toArray();
+                out.beginArray();
+                for (int i = 0; i < writers.length; ++i) {
+                    writers[i].write(out, values[i]);
+                }
+                out.endArray();
             }
         };
     }
@@ -655,19 +937,33 @@ public abstract class JSONSerialization {
         return tupleUnsafe(serializer1, serializer2, serializer3, serializer4, serializer5, serializer6, serializer7, serializer8, serializer9, serializer10, serializer11, serializer12, serializer13, serializer14, serializer15, serializer16, serializer17, serializer18, serializer19, serializer20, serializer21, serializer22);
     }
     
+    /**
+     * The fields are resolved once to a flat plan of names, getters and serializers.
+     * The names are encoded once per format.
+     *
+     * Members are written in the order of the fields.
+     * @throws IllegalArgumentException if two fields have the same name.
+     */
+    @SuppressWarnings("unchecked")
     public static final <T> JSONSerializer<T> object(final FieldSerializer<JSON,? super T,?,JSONStr>... fields) {
-        return new JSONSerializer<T>() {
+        final String[] names = new String[fields.length];
+        final FieldSerializer<JSON,T,Object,JSONStr>[] getters = new FieldSerializer[fields.length];
+        final JSONWritingSerializer<Object>[] writers = new JSONWritingSerializer[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            names[i] = fields[i].getName();
+            getters[i] = (FieldSerializer<JSON,T,Object,JSONStr>)fields[i];
+            writers[i] = JSONWritingSerializer.of(getters[i].getSerializer());
+        }
+        final JSONNames encodedNames = new JSONNames(names);
+        return new JSONWritingSerializer<T>() {
             @Override
-            public JSONStr serialize(final JSON format, final T object) {
-                @SuppressWarnings("unchecked")
-                Map<String, JSONStr> serializedFields = newMap(Functional.map((FieldSerializer<JSON,T,?,JSONStr>[])fields, new Transformer<FieldSerializer<JSON,T,?,JSONStr>, Map.Entry<String, JSONStr>>() {
-                    @Override
-                    public Map.Entry<String, JSONStr> transform(final FieldSerializer<JSON,T,?,JSONStr> source) {
-                        JSONStr json = source.apply(format, object);
-                        return Pair.of(source.getName(), json);
-                    }
-                }));
-                return format.toJSON(serializedFields);
+            public void write(JSONWriter out, T object) throws IOException {
+                out.beginObject();
+                for (int i = 0; i < names.length; ++i) {
+                    out.name(encodedNames, i);
+                    writers[i].write(out, getters[i].get(object));
+                }
+                out.endObject();
             }
             
             @Override
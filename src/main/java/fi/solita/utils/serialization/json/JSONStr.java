@@ -1,43 +1,102 @@
 package fi.solita.utils.serialization.json;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 /**
- * JSON serial format. Just a wrapper for String.
+ * JSON serial format. Just a wrapper for String, or a read-only view to a range of
+ * a shared parent, so that child values can be handed out without copying them.
+ *
+ * Equality is by content, and the hash code is computed once like that of a String.
  */
 public final class JSONStr implements CharSequence, Serializable {
     private final CharSequence json;
+    private final int offset;
+    private final int length;
+    /**
+     * Cached hash code, 0 if not yet computed.
+     */
+    private transient int hash;
 
     public JSONStr(CharSequence json) {
         this.json = json;
+        this.offset = 0;
+        this.length = json == null ? 0 : json.length();
+    }
+
+    public JSONStr(CharSequence json, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > json.length()) {
+            throw new IndexOutOfBoundsException(offset + "+" + length);
+        }
+        this.json = json;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * A view to the given range of this value, sharing the same chars.
+     */
+    public JSONStr slice(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(start + "-" + end);
+        }
+        if (start == 0 && end == length) {
+            return this;
+        }
+        return new JSONStr(json, offset + start, end - start);
     }
 
     @Override
     public int length() {
-        return json.length();
+        return length;
     }
 
     @Override
     public char charAt(int index) {
-        return json.charAt(index);
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+        return json.charAt(offset + index);
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        return json.subSequence(start, end);
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(start + "-" + end);
+        }
+        return json.subSequence(offset + start, offset + end);
     }
-    
+
     @Override
     public String toString() {
-        return json.toString();
+        return json.subSequence(offset, offset + length).toString();
+    }
+
+    /**
+     * Anything but a whole String, like a view to a range of a larger input,
+     * is serialized as a copy of just its own chars.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return json == null || json instanceof String && offset == 0 && length == json.length() ? this : new JSONStr(toString());
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((json == null) ? 0 : json.hashCode());
-        return result;
+        int h = hash;
+        if (h == 0) {
+            final int prime = 31;
+            if (json instanceof String && offset == 0 && length == json.length()) {
+                // cached by the String
+                h = json.hashCode();
+            } else {
+                for (int i = offset; i < offset + length; ++i) {
+                    h = prime * h + json.charAt(i);
+                }
+            }
+            h += prime;
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -49,11 +108,18 @@ public final class JSONStr implements CharSequence, Serializable {
         if (getClass() != obj.getClass())
             return false;
         JSONStr other = (JSONStr) obj;
-        if (json == null) {
-            if (other.json != null)
-                return false;
-        } else if (!json.equals(other.json))
+        if (json == null || other.json == null)
+            return json == other.json;
+        if (length != other.length)
             return false;
+        if (hash != 0 && other.hash != 0 && hash != other.hash)
+            return false;
+        if (json instanceof String && other.json instanceof String)
+            return ((String) json).regionMatches(offset, (String) other.json, other.offset, length);
+        for (int i = 0; i < length; ++i) {
+            if (json.charAt(offset + i) != other.json.charAt(other.offset + i))
+                return false;
+        }
         return true;
     }
 }
@@ -0,0 +1,12 @@
+package fi.solita.utils.serialization.json;
+
+/**
+ * Malformed JSON input. Unlike content errors, which are reported as
+ * partial {@link fi.solita.utils.serialization.Deserializer.Failure}s,
+ * these abort the whole document when reading with a {@link JSONReader}.
+ */
+public class JSONSyntaxException extends IllegalArgumentException {
+    public JSONSyntaxException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,45 @@
+package fi.solita.utils.serialization.json;
+
+import java.nio.ByteBuffer;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+import fi.solita.utils.serialization.Serialization;
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * JSON serialization to and from UTF-8 bytes, with the given low-level implementation.
+ * Use {@link JSONBytesSD#of} to adapt {@link JSONSD}s.
+ */
+public class JSONUTF8 implements Serialization<JSON,JSONBytes> {
+    public final JSON format;
+
+    public JSONUTF8(JSON format) {
+        this.format = format;
+    }
+
+    @Override
+    public final <T> JSONBytes serialize(Serializer<JSON,T,JSONBytes> serializer, T object) {
+        return serializer.serialize(format, object);
+    }
+
+    /**
+     * @see JSONBytesSD#serialize(JSON, Object, ByteBuffer)
+     */
+    public final <T> void serialize(JSONBytesSD<T> serializer, T object, ByteBuffer target) {
+        serializer.serialize(format, object, target);
+    }
+
+    @Override
+    public final <T> Either<Failure<T>,T> deserialize(Deserializer<JSON,T,JSONBytes> deserializer, JSONBytes json) {
+        return deserializer.deserialize(format, json);
+    }
+
+    /**
+     * @see JSONBytesSD#deserialize(JSON, ByteBuffer)
+     */
+    public final <T> Either<Failure<T>,T> deserialize(JSONBytesSD<T> deserializer, ByteBuffer json) {
+        return deserializer.deserialize(format, json);
+    }
+}
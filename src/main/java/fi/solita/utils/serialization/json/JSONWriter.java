@@ -0,0 +1,322 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * Streaming JSON output. Takes care of structure (brackets, commas, colons)
+ * and lets the low-level {@link JSON} implementation encode the values.
+ *
+ * Output is buffered, remember to {@link #flush()} when done.
+ *
+ * The {@link Appendable} methods write raw chars without any separators,
+ * and are meant for {@link JSON} implementations encoding values.
+ */
+public final class JSONWriter implements Appendable, Flushable {
+    private static final int BUFFER_SIZE = 1024;
+
+    private static final char[] DIGIT_TENS = new char[100];
+    private static final char[] DIGIT_ONES = new char[100];
+    static {
+        for (int i = 0; i < 100; ++i) {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    public final JSON format;
+    private final Appendable out;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JSONWriter(JSON format, Appendable out) {
+        this.format = format;
+        this.out = out;
+    }
+
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        append('[');
+        push();
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        depth--;
+        append(']');
+        return this;
+    }
+
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        append('{');
+        push();
+        return this;
+    }
+
+    public JSONWriter name(String name) throws IOException {
+        beforeValue();
+        format.write(this, name);
+        append(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * The name at the given index, as encoded once by {@link JSONNames}.
+     */
+    public JSONWriter name(JSONNames names, int index) throws IOException {
+        beforeValue();
+        append(names.encodedNames(format)[index]);
+        afterName = true;
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        depth--;
+        append('}');
+        return this;
+    }
+
+    public JSONWriter value(String value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    /**
+     * The string at the given index, as encoded once by {@link JSONNames}.
+     */
+    public JSONWriter value(JSONNames values, int index) throws IOException {
+        beforeValue();
+        append(values.encodedValues(format)[index]);
+        return this;
+    }
+
+    public JSONWriter value(boolean value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter value(double value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter value(float value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter value(long value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter value(BigInteger value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter value(BigDecimal value) throws IOException {
+        beforeValue();
+        format.write(this, value);
+        return this;
+    }
+
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        append("null");
+        return this;
+    }
+
+    /**
+     * An already serialized value.
+     */
+    public JSONWriter raw(CharSequence json) throws IOException {
+        beforeValue();
+        append(json);
+        return this;
+    }
+
+    /**
+     * Writes the value with the given serializer, streaming if the serializer supports it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JSONWriter value(Serializer<JSON,? super T,JSONStr> serializer, T object) throws IOException {
+        Serializer<JSON,? super T,JSONStr> s = serializer;
+        while (s instanceof JSONSD) {
+            s = ((JSONSD<? super T>)s).serializer;
+        }
+        if (s instanceof JSONWritingSerializer) {
+            ((JSONWritingSerializer<T>)s).write(this, object);
+        } else {
+            raw(s.serialize(format, object));
+        }
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0) {
+            if (hasElements[depth]) {
+                append(',');
+            }
+            hasElements[depth] = true;
+        }
+    }
+
+    private void push() {
+        depth++;
+        if (depth == hasElements.length) {
+            boolean[] newElements = new boolean[depth * 2];
+            System.arraycopy(hasElements, 0, newElements, 0, depth);
+            hasElements = newElements;
+        }
+        hasElements[depth] = false;
+    }
+
+    @Override
+    public JSONWriter append(char c) throws IOException {
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+        buf[pos++] = c;
+        return this;
+    }
+
+    @Override
+    public JSONWriter append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public JSONWriter append(CharSequence csq, int start, int end) throws IOException {
+        if (csq instanceof String) {
+            String str = (String) csq;
+            while (start < end) {
+                if (pos == buf.length) {
+                    flushBuffer();
+                }
+                int n = Math.min(end - start, buf.length - pos);
+                str.getChars(start, start + n, buf, pos);
+                pos += n;
+                start += n;
+            }
+        } else {
+            for (int i = start; i < end; ++i) {
+                append(csq.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes the decimal digits of the value straight to the buffer, two at a time.
+     */
+    void appendDigits(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            append("-9223372036854775808");
+            return;
+        }
+        if (buf.length - pos < 20) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int end = pos + digitCount(value);
+        int p = end;
+        while (value > Integer.MAX_VALUE) {
+            long q = value / 100;
+            int r = (int) (value - q * 100);
+            buf[--p] = DIGIT_ONES[r];
+            buf[--p] = DIGIT_TENS[r];
+            value = q;
+        }
+        int i = (int) value;
+        while (i >= 100) {
+            int q = i / 100;
+            int r = i - q * 100;
+            buf[--p] = DIGIT_ONES[r];
+            buf[--p] = DIGIT_TENS[r];
+            i = q;
+        }
+        if (i >= 10) {
+            buf[--p] = DIGIT_ONES[i];
+            buf[--p] = DIGIT_TENS[i];
+        } else {
+            buf[--p] = (char) ('0' + i);
+        }
+        pos = end;
+    }
+
+    /**
+     * Writes the shortest decimal of a finite value straight to the buffer.
+     */
+    void appendDecimal(double value) throws IOException {
+        if (buf.length - pos < ShortestDecimal.MAX_CHARS) {
+            flushBuffer();
+        }
+        pos = ShortestDecimal.write(value, buf, pos);
+    }
+
+    /**
+     * Writes the shortest decimal of a finite value straight to the buffer.
+     */
+    void appendDecimal(float value) throws IOException {
+        if (buf.length - pos < ShortestDecimal.MAX_CHARS) {
+            flushBuffer();
+        }
+        pos = ShortestDecimal.write(value, buf, pos);
+    }
+
+    private static int digitCount(long value) {
+        int n = 1;
+        for (long limit = 10; n < 19 && value >= limit; limit *= 10) {
+            n++;
+        }
+        return n;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (out instanceof Writer) {
+            ((Writer) out).write(buf, 0, pos);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(buf, 0, pos);
+        } else if (out instanceof UTF8Output) {
+            ((UTF8Output) out).write(buf, 0, pos);
+        } else {
+            out.append(new String(buf, 0, pos));
+        }
+        pos = 0;
+    }
+
+    /**
+     * Writes buffered output to the underlying {@link Appendable}, and flushes it if possible.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * A serializer writing directly to a {@link JSONWriter}, so that
+ * the output is built only once regardless of nesting.
+ */
+public abstract class JSONWritingSerializer<SOURCE_TYPE> implements JSONSerializer<SOURCE_TYPE> {
+
+    public abstract void write(JSONWriter out, SOURCE_TYPE object) throws IOException;
+
+    /**
+     * Resolves the serializer to write with once, instead of on each {@link JSONWriter#value(Serializer, Object)}:
+     * {@link JSONSD} wrappers are unwrapped, and other serializers are adapted to write their result as is.
+     */
+    @SuppressWarnings("unchecked")
+    public static final <T> JSONWritingSerializer<T> of(Serializer<JSON,? super T,JSONStr> serializer) {
+        Serializer<JSON,? super T,JSONStr> s = serializer;
+        while (s instanceof JSONSD) {
+            s = ((JSONSD<? super T>)s).serializer;
+        }
+        if (s instanceof JSONWritingSerializer) {
+            return (JSONWritingSerializer<T>)s;
+        }
+        final Serializer<JSON,? super T,JSONStr> other = s;
+        return new JSONWritingSerializer<T>() {
+            @Override
+            public void write(JSONWriter out, T object) throws IOException {
+                out.raw(other.serialize(out.format, object));
+            }
+
+            @Override
+            public JSONStr serialize(JSON format, T object) {
+                return other.serialize(format, object);
+            }
+
+            @Override
+            public String toString() {
+                return other.toString();
+            }
+        };
+    }
+
+    /**
+     * Builds the output in memory with {@link #write}.
+     */
+    @Override
+    public JSONStr serialize(JSON format, SOURCE_TYPE object) {
+        StringBuilder sb = new StringBuilder();
+        JSONWriter out = new JSONWriter(format, sb);
+        try {
+            write(out, object);
+            out.flush();
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+            throw new RuntimeException(e);
+        }
+        return new JSONStr(sb.toString());
+    }
+}
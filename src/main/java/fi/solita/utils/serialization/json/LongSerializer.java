@@ -0,0 +1,44 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * A serializer for primitive longs, writing without boxing.
+ */
+public abstract class LongSerializer extends JSONWritingSerializer<Long> {
+
+    public abstract void write(JSONWriter out, long value) throws IOException;
+
+    @Override
+    public void write(JSONWriter out, Long value) throws IOException {
+        write(out, value.longValue());
+    }
+
+    /**
+     * Resolves the given serializer to a primitive one, adapting it to box each value if it isn't one.
+     */
+    public static final LongSerializer primitive(Serializer<JSON,? super Long,JSONStr> serializer) {
+        final JSONWritingSerializer<Long> writer = JSONWritingSerializer.of(serializer);
+        if (writer instanceof LongSerializer) {
+            return (LongSerializer) writer;
+        }
+        return new LongSerializer() {
+            @Override
+            public void write(JSONWriter out, long value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public JSONStr serialize(JSON format, Long object) {
+                return writer.serialize(format, object);
+            }
+
+            @Override
+            public String toString() {
+                return writer.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,323 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.functional.Pair;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * Newline delimited JSON: a sequence of records, each serialized on its own line.
+ *
+ * Records are read one at a time and paired with their (1-based) line numbers.
+ * A malformed or otherwise failing record results in a {@link Failure} for that
+ * line only, and reading continues from the next line. Blank lines are skipped.
+ */
+public class NDJSON {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    public final JSON format;
+
+    public NDJSON(JSON format) {
+        this.format = format;
+    }
+
+    /**
+     * Writes the records one per line, each followed by a newline.
+     */
+    public final <T> void write(Serializer<JSON,? super T,JSONStr> serializer, Iterator<? extends T> records, Appendable out) throws IOException {
+        JSONWriter writer = new JSONWriter(format, out);
+        while (records.hasNext()) {
+            writer.value(serializer, records.next());
+            writer.append('\n');
+        }
+        writer.flush();
+    }
+
+    public final <T> void write(Serializer<JSON,? super T,JSONStr> serializer, Iterable<? extends T> records, Appendable out) throws IOException {
+        write(serializer, records.iterator(), out);
+    }
+
+    /**
+     * Writes the records as UTF-8.
+     */
+    public final <T> void write(Serializer<JSON,? super T,JSONStr> serializer, Iterator<? extends T> records, OutputStream out) throws IOException {
+        write(serializer, records, new OutputStreamWriter(out, Charset.forName("UTF-8")));
+    }
+
+    public final <T> void write(Serializer<JSON,? super T,JSONStr> serializer, Iterable<? extends T> records, OutputStream out) throws IOException {
+        write(serializer, records.iterator(), out);
+    }
+
+    /**
+     * Reads the records lazily, keeping only the current line in memory.
+     * Failing to read the input is thrown as {@link JSONInputException}.
+     */
+    public final <T> Iterator<Pair<Long,Either<Failure<T>,T>>> read(Deserializer<JSON,T,JSONStr> deserializer, Reader in) {
+        return new CharLines<T>(deserializer, in);
+    }
+
+    /**
+     * Reads UTF-8 records. Lines are split before decoding, so that
+     * also malformed UTF-8 fails only its own record.
+     * @see #read(Deserializer, Reader)
+     */
+    public final <T> Iterator<Pair<Long,Either<Failure<T>,T>>> read(Deserializer<JSON,T,JSONStr> deserializer, InputStream in) {
+        return new ByteLines<T>(deserializer, in);
+    }
+
+    /**
+     * @see #read(Deserializer, InputStream)
+     */
+    public final <T> Iterator<Pair<Long,Either<Failure<T>,T>>> read(Deserializer<JSON,T,JSONStr> deserializer, ReadableByteChannel in) {
+        return read(deserializer, Channels.newInputStream(in));
+    }
+
+    /**
+     * Reads the records of a file in parallel on the given executor.
+     *
+     * The file is divided into chunks of {@link #DEFAULT_CHUNK_SIZE} bytes, each chunk reading
+     * its bytes with positional reads and deserializing the lines starting within it. Records are
+     * returned either in file order, or as soon as their chunk is ready. Line numbers are exact
+     * in both cases. At most a few chunks per processor are in memory at a time.
+     *
+     * Failing to read the file is thrown as {@link JSONInputException}, and cancels the chunks
+     * not yet started. The returned iterator is also {@link java.io.Closeable}: close it to cancel
+     * the remaining chunks when not reading to the end.
+     */
+    public final <T> Iterator<Pair<Long,Either<Failure<T>,T>>> read(Deserializer<JSON,T,JSONStr> deserializer, FileChannel file, ExecutorService executor, boolean ordered) throws IOException {
+        return read(deserializer, file, executor, ordered, DEFAULT_CHUNK_SIZE);
+    }
+
+    public final <T> Iterator<Pair<Long,Either<Failure<T>,T>>> read(Deserializer<JSON,T,JSONStr> deserializer, FileChannel file, ExecutorService executor, boolean ordered, int chunkSize) throws IOException {
+        return new NDJSONChunks<T>(format, deserializer, file, executor, ordered, chunkSize, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * @return end of the line excluding a possible carriage return.
+     */
+    static int lineEnd(byte[] buf, int from, int to) {
+        return to > from && buf[to - 1] == '\r' ? to - 1 : to;
+    }
+
+    static boolean isBlank(byte[] buf, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            byte c = buf[i];
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isBlank(char[] buf, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            char c = buf[i];
+            if (c != ' ' && c != '\t' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a buffered input to lines. Subclasses provide the buffer of bytes or chars.
+     */
+    private abstract class Lines<T> implements Iterator<Pair<Long,Either<Failure<T>,T>>> {
+        protected final Deserializer<JSON,T,JSONStr> deserializer;
+        protected long lineNumber;
+        private Pair<Long,Either<Failure<T>,T>> next;
+        private boolean done;
+
+        Lines(Deserializer<JSON,T,JSONStr> deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        /**
+         * Unread part of the buffer.
+         */
+        private int start;
+        private int end;
+        private boolean eof;
+
+        /**
+         * Current line, excluding the newline and a possible carriage return.
+         */
+        protected int lineStart;
+        protected int lineEnd;
+
+        /**
+         * @return the char or byte at the given index of the buffer.
+         */
+        protected abstract int at(int i);
+
+        /**
+         * Moves the given range to the beginning of the buffer, growing the buffer if the range fills it,
+         * and reads more input after it.
+         * @return the number of chars or bytes read, or -1 at the end of input.
+         */
+        protected abstract int fill(int from, int to) throws IOException;
+
+        protected abstract boolean isBlank();
+        protected abstract Either<Failure<T>,T> deserializeLine();
+
+        /**
+         * Advances to the next line, if any.
+         */
+        private boolean readLine() throws IOException {
+            int i = start;
+            while (true) {
+                while (i < end) {
+                    if (at(i) == '\n') {
+                        setLine(start, i);
+                        start = i + 1;
+                        return true;
+                    }
+                    i++;
+                }
+                if (eof) {
+                    if (start == end) {
+                        return false;
+                    }
+                    setLine(start, end);
+                    start = end;
+                    return true;
+                }
+                int n = fill(start, end);
+                i -= start;
+                end -= start;
+                start = 0;
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    end += n;
+                }
+            }
+        }
+
+        private void setLine(int from, int to) {
+            lineStart = from;
+            lineEnd = to > from && at(to - 1) == '\r' ? to - 1 : to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (done) {
+                return false;
+            }
+            try {
+                while (readLine()) {
+                    lineNumber++;
+                    if (!isBlank()) {
+                        next = Pair.of(lineNumber, deserializeLine());
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                done = true;
+                throw new JSONInputException(e);
+            }
+            done = true;
+            return false;
+        }
+
+        @Override
+        public Pair<Long,Either<Failure<T>,T>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Pair<Long,Either<Failure<T>,T>> ret = next;
+            next = null;
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final class CharLines<T> extends Lines<T> {
+        private final Reader in;
+        private char[] buf = new char[BUFFER_SIZE];
+
+        CharLines(Deserializer<JSON,T,JSONStr> deserializer, Reader in) {
+            super(deserializer);
+            this.in = in;
+        }
+
+        @Override
+        protected int at(int i) {
+            return buf[i];
+        }
+
+        @Override
+        protected int fill(int from, int to) throws IOException {
+            char[] target = to - from == buf.length ? new char[buf.length * 2] : buf;
+            System.arraycopy(buf, from, target, 0, to - from);
+            buf = target;
+            return in.read(buf, to - from, buf.length - (to - from));
+        }
+
+        @Override
+        protected boolean isBlank() {
+            return NDJSON.isBlank(buf, lineStart, lineEnd);
+        }
+
+        @Override
+        protected Either<Failure<T>,T> deserializeLine() {
+            return format.deserialize(deserializer, new JSONStr(new String(buf, lineStart, lineEnd - lineStart)));
+        }
+    }
+
+    private final class ByteLines<T> extends Lines<T> {
+        private final InputStream in;
+        private byte[] buf = new byte[BUFFER_SIZE];
+
+        ByteLines(Deserializer<JSON,T,JSONStr> deserializer, InputStream in) {
+            super(deserializer);
+            this.in = in;
+        }
+
+        @Override
+        protected int at(int i) {
+            return buf[i];
+        }
+
+        @Override
+        protected int fill(int from, int to) throws IOException {
+            byte[] target = to - from == buf.length ? new byte[buf.length * 2] : buf;
+            System.arraycopy(buf, from, target, 0, to - from);
+            buf = target;
+            return in.read(buf, to - from, buf.length - (to - from));
+        }
+
+        @Override
+        protected boolean isBlank() {
+            return NDJSON.isBlank(buf, lineStart, lineEnd);
+        }
+
+        @Override
+        protected Either<Failure<T>,T> deserializeLine() {
+            return format.deserialize(deserializer, new JSONBytes(buf, lineStart, lineEnd - lineStart));
+        }
+    }
+}
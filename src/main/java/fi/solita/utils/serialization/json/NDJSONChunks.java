@@ -0,0 +1,337 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.functional.Pair;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+
+/**
+ * Parallel reading of an NDJSON file, see {@link NDJSON#read(Deserializer, FileChannel, ExecutorService, boolean)}.
+ *
+ * Chunk {@code i} handles the lines starting within bytes {@code [i*chunkSize, (i+1)*chunkSize)},
+ * reading past its end to complete its last line, so chunks can be processed independently
+ * without a separate pass to align them to lines.
+ *
+ * Each chunk first counts its lines and publishes the count, so that absolute line numbers
+ * are known even if chunks complete out of order.
+ *
+ * When a chunk fails, or the iterator is closed, the chunks not yet started are cancelled.
+ */
+final class NDJSONChunks<T> implements Iterator<Pair<Long,Either<Failure<T>,T>>>, Closeable {
+    /**
+     * How much is read past the end of a chunk at first, to complete its last line.
+     */
+    private static final int WINDOW_MARGIN = 64 * 1024;
+
+    private final JSON format;
+    private final Deserializer<JSON,T,JSONStr> deserializer;
+    private final FileChannel file;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final boolean ordered;
+    private final int maxInFlight;
+
+    private final ExecutorService executor;
+    private final CompletionService<Chunk> completion;
+    /**
+     * Submitted chunks not yet taken, in file order.
+     */
+    private final LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+
+    private final long[] lineCounts;
+    private final Throwable[] failures;
+    private final CountDownLatch[] counted;
+    private final long[] firstLines;
+    private int knownFirstLines = 1;
+
+    private int submitted;
+    private int taken;
+    private Chunk current;
+    private int cursor;
+
+    NDJSONChunks(JSON format, Deserializer<JSON,T,JSONStr> deserializer, FileChannel file, ExecutorService executor, boolean ordered, int chunkSize, int maxInFlight) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        if (chunkSize > Integer.MAX_VALUE - WINDOW_MARGIN - 1) {
+            // a window is a chunk and a margin in a single array
+            throw new IllegalArgumentException("chunkSize too large: " + chunkSize);
+        }
+        this.format = format;
+        this.deserializer = deserializer;
+        this.file = file;
+        this.size = file.size();
+        this.chunkSize = chunkSize;
+        this.ordered = ordered;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+        this.completion = ordered ? null : new ExecutorCompletionService<Chunk>(executor);
+
+        long count = (size + chunkSize - 1) / chunkSize;
+        if (count > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("chunkSize too small for a file of " + size + " bytes");
+        }
+        this.chunkCount = (int) count;
+        this.lineCounts = new long[chunkCount];
+        this.failures = new Throwable[chunkCount];
+        this.counted = new CountDownLatch[chunkCount];
+        for (int i = 0; i < chunkCount; ++i) {
+            counted[i] = new CountDownLatch(1);
+        }
+        this.firstLines = new long[chunkCount + 1];
+        this.firstLines[0] = 1;
+        submitMore();
+    }
+
+    private void submitMore() {
+        while (submitted < chunkCount && submitted - taken < maxInFlight) {
+            final int index = submitted++;
+            Callable<Chunk> task = new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws Exception {
+                    try {
+                        return read(index);
+                    } catch (Exception e) {
+                        failures[index] = e;
+                        throw e;
+                    } catch (Error e) {
+                        failures[index] = e;
+                        throw e;
+                    } finally {
+                        if (counted[index].getCount() > 0) {
+                            lineCounts[index] = -1;
+                            counted[index].countDown();
+                        }
+                    }
+                }
+            };
+            pending.add(ordered ? executor.submit(task) : completion.submit(task));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || cursor == current.values.size()) {
+            if (taken == chunkCount) {
+                current = null;
+                return false;
+            }
+            current = take();
+            cursor = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public Pair<Long,Either<Failure<T>,T>> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long line = firstLine(current.index) + current.lines[cursor];
+        return Pair.of(line, current.values.get(cursor++));
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels the chunks not yet taken, and ends the iteration.
+     */
+    @Override
+    public void close() {
+        for (Future<Chunk> f: pending) {
+            // not interrupting, since that would close the file channel of a running chunk
+            f.cancel(false);
+        }
+        pending.clear();
+        submitted = taken = chunkCount;
+        current = null;
+    }
+
+    private Chunk take() {
+        try {
+            Future<Chunk> f = ordered ? pending.removeFirst() : completion.take();
+            if (!ordered) {
+                pending.remove(f);
+            }
+            taken++;
+            Chunk ret = f.get();
+            submitMore();
+            return ret;
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new JSONInputException(new InterruptedIOException());
+        } catch (ExecutionException e) {
+            close();
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof IOException) {
+            throw new JSONInputException((IOException) cause);
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw (Error) cause;
+    }
+
+    /**
+     * @return line number of the first line of the given chunk, waiting for the preceding chunks to count their lines if needed.
+     */
+    private long firstLine(int index) {
+        while (knownFirstLines <= index) {
+            int i = knownFirstLines - 1;
+            try {
+                counted[i].await();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new JSONInputException(new InterruptedIOException());
+            }
+            if (lineCounts[i] < 0) {
+                // a preceding chunk failed before counting its lines
+                close();
+                throw rethrow(failures[i]);
+            }
+            firstLines[i + 1] = firstLines[i] + lineCounts[i];
+            knownFirstLines++;
+        }
+        return firstLines[index];
+    }
+
+    private final class Chunk {
+        final int index;
+        final int[] lines;
+        final List<Either<Failure<T>,T>> values;
+
+        Chunk(int index, int[] lines, List<Either<Failure<T>,T>> values) {
+            this.index = index;
+            this.lines = lines;
+            this.values = values;
+        }
+    }
+
+    private Chunk read(int index) throws IOException {
+        long begin = (long) index * chunkSize;
+        long end = Math.min(size, begin + chunkSize);
+        long from = index == 0 ? 0 : begin - 1;
+
+        Window w = new Window(from, (int) Math.min(size - from, end - from + WINDOW_MARGIN));
+        int pos = 0;
+        if (index > 0) {
+            // a line starts within this chunk only after a newline at or after begin-1
+            pos = w.indexOfNewline(0);
+            pos = pos < 0 ? w.length() : pos + 1;
+        }
+
+        // first pass: find the lines starting in this chunk
+        int[] bounds = new int[64];
+        int lines = 0;
+        while (pos < w.length() && w.from + pos < end) {
+            int nl = w.indexOfNewline(pos);
+            int lineEnd = nl < 0 ? w.length() : nl;
+            if (lines * 2 == bounds.length) {
+                int[] newBounds = new int[bounds.length * 2];
+                System.arraycopy(bounds, 0, newBounds, 0, bounds.length);
+                bounds = newBounds;
+            }
+            bounds[lines * 2] = pos;
+            bounds[lines * 2 + 1] = lineEnd;
+            lines++;
+            pos = lineEnd + 1;
+        }
+        lineCounts[index] = lines;
+        counted[index].countDown();
+
+        // second pass: deserialize the non-blank ones
+        int[] lineNumbers = new int[lines];
+        List<Either<Failure<T>,T>> values = new ArrayList<Either<Failure<T>,T>>(lines);
+        for (int i = 0; i < lines; ++i) {
+            int s = bounds[i * 2];
+            int e = NDJSON.lineEnd(w.bytes, s, bounds[i * 2 + 1]);
+            if (!NDJSON.isBlank(w.bytes, s, e)) {
+                lineNumbers[values.size()] = i;
+                values.add(format.deserialize(deserializer, new JSONBytes(w.bytes, s, e - s)));
+            }
+        }
+        return new Chunk(index, lineNumbers, values);
+    }
+
+    /**
+     * A part of the file read to the heap with positional reads, growing when a line extends past it.
+     */
+    private final class Window {
+        final long from;
+        byte[] bytes = new byte[0];
+
+        Window(long from, int length) throws IOException {
+            this.from = from;
+            load(length);
+        }
+
+        int length() {
+            return bytes.length;
+        }
+
+        /**
+         * Grows the window to the given length, reading only the bytes not already read.
+         */
+        private void load(int length) throws IOException {
+            int read = bytes.length;
+            bytes = Arrays.copyOf(bytes, length);
+            ByteBuffer target = ByteBuffer.wrap(bytes, read, length - read);
+            while (target.hasRemaining()) {
+                if (file.read(target, from + target.position()) == -1) {
+                    throw new IOException("File truncated while reading, at byte " + (from + target.position()));
+                }
+            }
+        }
+
+        /**
+         * @return index of the next newline, or -1 if there's none before the end of file.
+         */
+        int indexOfNewline(int start) throws IOException {
+            int i = start;
+            while (true) {
+                byte[] b = bytes;
+                for (; i < b.length; ++i) {
+                    if (b[i] == '\n') {
+                        return i;
+                    }
+                }
+                if (from + b.length == size) {
+                    return -1;
+                }
+                long length = Math.min(size - from, 2L * b.length);
+                if (length > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Line too long at byte " + (from + start));
+                }
+                load((int) length);
+            }
+        }
+    }
+}
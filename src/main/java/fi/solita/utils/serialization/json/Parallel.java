@@ -0,0 +1,156 @@
+package fi.solita.utils.serialization.json;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.functional.Option;
+import fi.solita.utils.serialization.Deserializer;
+import fi.solita.utils.serialization.Deserializer.Failure;
+import fi.solita.utils.serialization.Serializer;
+
+/**
+ * Deserializes already split elements, or serializes elements, in parallel, preserving their order.
+ *
+ * Elements are grouped to contiguous batches, a few batches per processor.
+ * Inputs smaller than {@link #THRESHOLD} chars, or fewer than {@link #MIN_BATCH} elements per batch
+ * when serializing, are handled on the calling thread, since handing them over would cost more.
+ *
+ * Element (de)serializers that are themselves parallel should not use the same bounded executor,
+ * since all of its threads could end up waiting for batches that never get a thread.
+ */
+final class Parallel {
+    static final int THRESHOLD = 64 * 1024;
+    static final int MIN_BATCH = 256;
+    private static final int BATCHES_PER_PROCESSOR = 4;
+
+    private Parallel() {
+    }
+
+    /**
+     * @param read whether to deserialize the elements with a {@link JSONReader} of the format,
+     *             as when the whole array is read with one, so that the results don't differ.
+     *             Syntax errors are then thrown as {@link JSONSyntaxException}.
+     */
+    static <T> List<Either<Failure<T>,T>> deserialize(final JSON format, final Deserializer<JSON,T,JSONStr> deserializer, final List<JSONStr> elements, final boolean read, ExecutorService executor) {
+        long total = 0;
+        for (JSONStr element: elements) {
+            total += element.length();
+        }
+        if (executor == null || total < THRESHOLD || elements.size() < 2) {
+            return deserialize(format, deserializer, elements, read, 0, elements.size());
+        }
+
+        long batchSize = Math.max(THRESHOLD / 4, total / (BATCHES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()));
+        List<Future<List<Either<Failure<T>,T>>>> batches = new ArrayList<Future<List<Either<Failure<T>,T>>>>();
+        int start = 0;
+        while (start < elements.size()) {
+            int end = start;
+            long size = 0;
+            while (end < elements.size() && size < batchSize) {
+                size += elements.get(end++).length();
+            }
+            final int from = start;
+            final int to = end;
+            batches.add(executor.submit(new Callable<List<Either<Failure<T>,T>>>() {
+                @Override
+                public List<Either<Failure<T>,T>> call() {
+                    return deserialize(format, deserializer, elements, read, from, to);
+                }
+            }));
+            start = end;
+        }
+
+        List<Either<Failure<T>,T>> ret = new ArrayList<Either<Failure<T>,T>>(elements.size());
+        for (List<Either<Failure<T>,T>> batch: results(batches)) {
+            ret.addAll(batch);
+        }
+        return ret;
+    }
+
+    private static <T> List<Either<Failure<T>,T>> deserialize(JSON format, Deserializer<JSON,T,JSONStr> deserializer, List<JSONStr> elements, boolean read, int from, int to) {
+        List<Either<Failure<T>,T>> ret = new ArrayList<Either<Failure<T>,T>>(to - from);
+        for (int i = from; i < to; ++i) {
+            JSONStr element = elements.get(i);
+            Option<JSONReader> reader = read ? format.reader(element) : Option.<JSONReader>None();
+            ret.add(reader.isDefined() ? reader.get().value(deserializer) : deserializer.deserialize(format, element));
+        }
+        return ret;
+    }
+
+    /**
+     * Writes each batch of elements with the given serializer, separated with commas, to a fragment
+     * of a JSON array (or object, if the serializer writes members). The fragments are written in order
+     * with {@link JSONWriter#raw(CharSequence)}, which separates them with commas as if they were single values.
+     */
+    static <T> void serialize(final JSON format, final Serializer<JSON,? super T,JSONStr> serializer, final List<T> elements, JSONWriter out, ExecutorService executor) throws IOException {
+        List<Future<StringBuilder>> batches = new ArrayList<Future<StringBuilder>>();
+        int batchSize = batchSize(elements.size());
+        for (int start = 0; start < elements.size(); start += batchSize) {
+            final int from = start;
+            final int to = Math.min(elements.size(), start + batchSize);
+            batches.add(executor.submit(new Callable<StringBuilder>() {
+                @Override
+                public StringBuilder call() throws IOException {
+                    StringBuilder sb = new StringBuilder();
+                    JSONWriter fragment = new JSONWriter(format, sb);
+                    for (int i = from; i < to; ++i) {
+                        if (i > from) {
+                            fragment.append(',');
+                        }
+                        fragment.value(serializer, elements.get(i));
+                    }
+                    fragment.flush();
+                    return sb;
+                }
+            }));
+        }
+        for (StringBuilder fragment: results(batches)) {
+            out.raw(fragment);
+        }
+    }
+
+    /**
+     * @return whether serializing this many elements is worth splitting.
+     */
+    static boolean worthSplitting(int size, ExecutorService executor) {
+        return executor != null && size >= 2 * MIN_BATCH;
+    }
+
+    private static int batchSize(int size) {
+        return Math.max(MIN_BATCH, size / (BATCHES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()) + 1);
+    }
+
+    private static <R> List<R> results(List<Future<R>> batches) {
+        List<R> ret = new ArrayList<R>(batches.size());
+        try {
+            for (Future<R> batch: batches) {
+                ret.add(batch.get());
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> batch: batches) {
+                batch.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel work", e);
+        } catch (ExecutionException e) {
+            for (Future<?> batch: batches) {
+                batch.cancel(true);
+            }
+            // same as if the element (de)serializer had thrown on the calling thread
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            // StringBuilder doesn't throw
+            throw new RuntimeException(e.getCause());
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,356 @@
+package fi.solita.utils.serialization.json;
+
+import java.math.BigInteger;
+
+/**
+ * Formats finite doubles and floats with the shortest decimal that rounds back to the same value,
+ * using the Schubfach algorithm by Raffaello Giulietti, writing the chars directly to a buffer.
+ *
+ * Among the shortest decimals (but at least 2 digits), the one closest to the value is chosen,
+ * which is also what {@link Double#toString(double)} does since Java 19. The layout is that of
+ * {@link Double#toString(double)}, without a trailing ".0" for integral values below 10^7:
+ * {@code 100}, {@code 0.001}, {@code 1.0E7}, {@code 1.0E-4}.
+ */
+public final class ShortestDecimal {
+    /**
+     * Enough for any double or float.
+     */
+    static final int MAX_CHARS = 32;
+
+    // double
+    private static final int P = 53;
+    private static final int W = 11;
+    private static final int Q_MIN = -1074;
+    private static final int C_TINY = 3;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = (1 << W) - 1;
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    // float
+    private static final int F_P = 24;
+    private static final int F_W = 8;
+    private static final int F_Q_MIN = -149;
+    private static final int F_C_TINY = 8;
+    private static final int F_C_MIN = 1 << (F_P - 1);
+    private static final int F_BQ_MASK = (1 << F_W) - 1;
+    private static final int F_T_MASK = (1 << (F_P - 1)) - 1;
+    private static final long MASK_32 = (1L << 32) - 1;
+
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    /**
+     * For each k, g = floor(10^-k * 2^-r) + 1, with r such that 2^125 <= 10^-k * 2^-r < 2^126,
+     * split to its higher 63 bits G1 and lower 63 bits G0. Computed once instead of embedding the table.
+     */
+    private static final long[] G1 = new long[K_MAX - K_MIN + 1];
+    private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+    static {
+        BigInteger mask63 = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; ++k) {
+            int e = -k;
+            int r = flog2pow10(e) - 125;
+            BigInteger beta;
+            if (e >= 0) {
+                BigInteger pow10 = BigInteger.TEN.pow(e);
+                beta = r >= 0 ? pow10.shiftRight(r) : pow10.shiftLeft(-r);
+            } else {
+                beta = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(-e));
+            }
+            BigInteger g = beta.add(BigInteger.ONE);
+            G1[k - K_MIN] = g.shiftRight(63).longValue();
+            G0[k - K_MIN] = g.and(mask63).longValue();
+        }
+    }
+
+    private ShortestDecimal() {
+    }
+
+    public static String toString(double v) {
+        char[] buf = new char[MAX_CHARS];
+        return new String(buf, 0, write(v, buf, 0));
+    }
+
+    public static String toString(float v) {
+        char[] buf = new char[MAX_CHARS];
+        return new String(buf, 0, write(v, buf, 0));
+    }
+
+    /**
+     * Writes a finite value to the buffer, which must have room for {@link #MAX_CHARS} chars.
+     * @return the position after the written chars.
+     */
+    static int write(double v, char[] buf, int pos) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+        if (bq != 0) {
+            // normal value, here mq = -q
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            // integral values are exact
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return layout(f, 0, buf, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        }
+        if (t != 0) {
+            // subnormal value
+            return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, buf, pos) : toDecimal(Q_MIN, t, 0, buf, pos);
+        }
+        buf[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * Writes a finite value to the buffer, which must have room for {@link #MAX_CHARS} chars.
+     * @return the position after the written chars.
+     */
+    static int write(float v, char[] buf, int pos) {
+        int bits = Float.floatToRawIntBits(v);
+        int t = bits & F_T_MASK;
+        int bq = (bits >>> (F_P - 1)) & F_BQ_MASK;
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+        if (bq != 0) {
+            int mq = -F_Q_MIN + 1 - bq;
+            int c = F_C_MIN | t;
+            if (0 < mq && mq < F_P) {
+                int f = c >> mq;
+                if (f << mq == c) {
+                    return layout(f, 0, buf, pos);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, pos);
+        }
+        if (t != 0) {
+            return t < F_C_TINY ? toDecimal(F_Q_MIN, 10 * t, -1, buf, pos) : toDecimal(F_Q_MIN, t, 0, buf, pos);
+        }
+        buf[pos++] = '0';
+        return pos;
+    }
+
+    /**
+     * The value is c 2^q, with the decimal exponent adjusted by dk.
+     */
+    private static int toDecimal(int q, long c, int dk, char[] buf, int pos) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G1[k - K_MIN];
+        long g0 = G0[k - K_MIN];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // one digit shorter, if one of those is in the rounding interval
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return layout(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return layout(uin ? s : t, k + dk, buf, pos);
+        }
+        // both in the interval, pick the closest, or the even one on a tie
+        long cmp = vb - (s + t << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    private static int toDecimal(int q, int c, int dk, char[] buf, int pos) {
+        int out = c & 0x1;
+        long cb = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != F_C_MIN || q == F_Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        long g = G1[k - K_MIN] + 1;
+
+        int vb = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if (s >= 100) {
+            int sp10 = 10 * (int) (s * 1717986919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return layout(upin ? sp10 : tp10, k, buf, pos);
+            }
+        }
+
+        int t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return layout(uin ? s : t, k + dk, buf, pos);
+        }
+        int cmp = vb - (s + t << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+    }
+
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    private static int rop(long g, long cp) {
+        long x1 = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    /**
+     * The high 64 bits of the 128 bit product.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * floor(log10(2^e))
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    /**
+     * floor(log10(3/4 2^e))
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L + -274743187321L >> 41);
+    }
+
+    /**
+     * floor(log2(10^e))
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    /**
+     * Writes the decimal f 10^e, f > 0, in the layout of {@link Double#toString(double)}
+     * but without a trailing ".0" in plain notation.
+     */
+    private static int layout(long f, int e, char[] buf, int pos) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int len = 1;
+        for (long limit = 10; len < 19 && f >= limit; limit *= 10) {
+            len++;
+        }
+        // value is 0.d1d2...dn 10^exp
+        int exp = e + len;
+        if (exp > 0 && exp <= 7) {
+            if (len <= exp) {
+                digits(f, len, buf, pos, -1);
+                pos += len;
+                for (int i = len; i < exp; ++i) {
+                    buf[pos++] = '0';
+                }
+                return pos;
+            }
+            return digits(f, len, buf, pos, pos + exp);
+        } else if (exp <= 0 && exp > -3) {
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (int i = exp; i < 0; ++i) {
+                buf[pos++] = '0';
+            }
+            return digits(f, len, buf, pos, -1);
+        }
+        if (len == 1) {
+            buf[pos++] = (char) ('0' + f);
+            buf[pos++] = '.';
+            buf[pos++] = '0';
+        } else {
+            pos = digits(f, len, buf, pos, pos + 1);
+        }
+        buf[pos++] = 'E';
+        int x = exp - 1;
+        if (x < 0) {
+            buf[pos++] = '-';
+            x = -x;
+        }
+        if (x >= 100) {
+            buf[pos++] = (char) ('0' + x / 100);
+        }
+        if (x >= 10) {
+            buf[pos++] = (char) ('0' + x / 10 % 10);
+        }
+        buf[pos++] = (char) ('0' + x % 10);
+        return pos;
+    }
+
+    /**
+     * Writes the len digits of f from the given position, with a '.' at the given index if it's not -1.
+     * @return the position after the written chars.
+     */
+    private static int digits(long f, int len, char[] buf, int pos, int dot) {
+        int end = dot == -1 ? pos + len : pos + len + 1;
+        int p = end;
+        for (int i = 0; i < len; ++i) {
+            if (--p == dot) {
+                buf[p--] = '.';
+            }
+            long q = f / 10;
+            buf[p] = (char) ('0' + (f - q * 10));
+            f = q;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,187 @@
+package fi.solita.utils.serialization.json;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes chars to UTF-8 into a growing byte array or into a {@link ByteBuffer}.
+ *
+ * Runs of ASCII chars are copied with a tight loop without any further checks.
+ * Unpaired surrogates are encoded as '?', like {@link String#getBytes} does.
+ */
+final class UTF8Output implements Appendable {
+    private static final int STAGING_SIZE = 8192;
+
+    private final ByteBuffer target;
+    private final boolean direct;
+    private byte[] bytes;
+    private int pos;
+    private int limit;
+    private char highSurrogate;
+
+    /**
+     * Output to a byte array growing as needed.
+     */
+    UTF8Output(int initialSize) {
+        this.target = null;
+        this.direct = false;
+        this.bytes = new byte[Math.max(initialSize, 16)];
+        this.limit = bytes.length;
+    }
+
+    /**
+     * Output to the remaining space of the given buffer. Heap buffers are written
+     * in place, direct buffers through a small staging array.
+     * Running out of space throws {@link BufferOverflowException}.
+     */
+    UTF8Output(ByteBuffer target) {
+        this.target = target;
+        this.direct = !target.hasArray();
+        if (direct) {
+            this.bytes = new byte[Math.min(Math.max(target.remaining(), 16), STAGING_SIZE)];
+            this.limit = bytes.length;
+        } else {
+            this.bytes = target.array();
+            this.pos = target.arrayOffset() + target.position();
+            this.limit = target.arrayOffset() + target.limit();
+        }
+    }
+
+    @Override
+    public UTF8Output append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public UTF8Output append(CharSequence csq, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            append(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public UTF8Output append(char c) {
+        if (c < 0x80 && highSurrogate == 0) {
+            if (pos == limit) {
+                makeRoom(1);
+            }
+            bytes[pos++] = (byte) c;
+        } else {
+            encode(c);
+        }
+        return this;
+    }
+
+    void write(char[] chars, int off, int len) {
+        int i = off;
+        int end = off + len;
+        while (i < end) {
+            if (highSurrogate == 0) {
+                if (pos == limit) {
+                    makeRoom(1);
+                }
+                int stop = i + Math.min(end - i, limit - pos);
+                byte[] b = bytes;
+                int p = pos;
+                while (i < stop) {
+                    char c = chars[i];
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    b[p++] = (byte) c;
+                    i++;
+                }
+                pos = p;
+                if (i == end) {
+                    return;
+                }
+                if (i < stop) {
+                    encode(chars[i++]);
+                }
+            } else {
+                encode(chars[i++]);
+            }
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                ensure(4);
+                bytes[pos++] = (byte) (0xF0 | (cp >> 18));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[pos++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            ensure(1);
+            bytes[pos++] = '?';
+        }
+        if (c < 0x80) {
+            ensure(1);
+            bytes[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            ensure(2);
+            bytes[pos++] = (byte) (0xC0 | (c >> 6));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            ensure(1);
+            bytes[pos++] = '?';
+        } else {
+            ensure(3);
+            bytes[pos++] = (byte) (0xE0 | (c >> 12));
+            bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void ensure(int n) {
+        if (limit - pos < n) {
+            makeRoom(n);
+        }
+    }
+
+    private void makeRoom(int n) {
+        if (target == null) {
+            byte[] newBytes = new byte[Math.max(bytes.length * 2, pos + n)];
+            System.arraycopy(bytes, 0, newBytes, 0, pos);
+            bytes = newBytes;
+            limit = bytes.length;
+        } else if (direct) {
+            target.put(bytes, 0, pos);
+            pos = 0;
+        } else {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * Completes the output. For a {@link ByteBuffer} target, its position is moved past the written bytes.
+     */
+    void finish() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            ensure(1);
+            bytes[pos++] = '?';
+        }
+        if (target == null) {
+            return;
+        }
+        if (direct) {
+            target.put(bytes, 0, pos);
+            pos = 0;
+        } else {
+            target.position(pos - target.arrayOffset());
+        }
+    }
+
+    JSONBytes toBytes() {
+        return new JSONBytes(bytes, 0, pos);
+    }
+}
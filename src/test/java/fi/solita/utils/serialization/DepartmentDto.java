@@ -2,7 +2,10 @@ package fi.solita.utils.serialization;
 
 import java.util.Set;
 
+import fi.solita.utils.serialization.json.GenerateJSONSD;
 
+
+@GenerateJSONSD
 public class DepartmentDto {
         public final Set<EmployeeDto<Boolean>> employees;
 		public final String name;
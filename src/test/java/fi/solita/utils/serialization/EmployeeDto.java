@@ -1,6 +1,9 @@
 package fi.solita.utils.serialization;
 
+import fi.solita.utils.serialization.json.GenerateJSONSD;
 
+
+@GenerateJSONSD
 public class EmployeeDto<T> {
 	
 	public static class Salary {
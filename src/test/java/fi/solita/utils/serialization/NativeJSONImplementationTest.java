@@ -0,0 +1,249 @@
+package fi.solita.utils.serialization;
+
+import static fi.solita.utils.functional.Collections.newList;
+import static fi.solita.utils.functional.Functional.size;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fi.solita.utils.functional.Either;
+import fi.solita.utils.serialization.Deserializer.Failure;
+import fi.solita.utils.serialization.Util.FieldDeserializer;
+import fi.solita.utils.serialization.impl.NativeJSONImplementation;
+import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONDeserialization;
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONReader;
+import fi.solita.utils.serialization.json.JSONSD;
+import fi.solita.utils.serialization.json.JSONSerialization;
+import fi.solita.utils.serialization.json.JSONSerializer;
+import fi.solita.utils.serialization.json.JSONStr;
+
+public class NativeJSONImplementationTest extends SerializationTest {
+    
+    @Override
+    protected JSON json() {
+        return new NativeJSONImplementation();
+    }
+    
+    @Test
+    public void stringEscapes() {
+        String str = "a\"b\\c/d\n\te\u0001 ä";
+        JSONStr s = json.toJSON(str);
+        assertEquals("\"a\\\"b\\\\c/d\\n\\te\\u0001\\u2028ä\"", s.toString());
+        assertEquals(str, json.toString(s));
+        assertEquals("ä/\n", json.toString(new JSONStr(" \"\\u00e4\\/\\n\" ")));
+    }
+    
+    @Test
+    public void numbers() {
+        assertEquals("1", json.toJSON(1.0).toString());
+        assertEquals("1.5", json.toJSON(1.5).toString());
+        assertEquals(-0.25, json.toDouble(new JSONStr("-2.5e-1")), 0);
+        assertEquals(BigInteger.valueOf(12345678901L), json.toBigInteger(new JSONStr("12345678901")));
+        assertEquals(new BigDecimal("0.10"), json.toBigDecimal(new JSONStr("0.10")));
+    }
+    
+	@Test(timeout = 5000)
+    public void bigIntegersWithHugeExponentsFailFast() throws Exception {
+        assertEquals(new BigInteger("1500000000000"), json.toBigInteger(new JSONStr("1.5e12")));
+        assertEquals(BigInteger.ZERO, json.toBigInteger(new JSONStr("1e-100000000")));
+        assertTrue(json.deserialize(JSONSD.bigint, new JSONStr("1e100000000")).isLeft());
+        
+        Iterator<Either<Failure<BigInteger>, BigInteger>> it = json.iterate(JSONSD.bigint, new StringReader("[1, -1e100000000, 3]"));
+        assertEquals(BigInteger.ONE, it.next().right.get());
+        assertTrue(it.next().isLeft());
+        assertEquals(BigInteger.valueOf(3), it.next().right.get());
+        assertTrue(!it.hasNext());
+    }
+    
+    @Test
+    public void childrenAreSlicesOfTheInput() {
+        JSONStr[] arr = json.toArray(new JSONStr(" [ 1 , \"a,b\" , [2, {\"c\": [3]}] ,null] "));
+        assertEquals(4, arr.length);
+        assertEquals("1", arr[0].toString());
+        assertEquals("\"a,b\"", arr[1].toString());
+        assertEquals("[2, {\"c\": [3]}]", arr[2].toString());
+        assertEquals("null", arr[3].toString());
+        
+        Map<String, JSONStr> obj = json.toMap(json.toArray(arr[2])[1]);
+        assertEquals("[3]", obj.get("c").toString());
+        assertEquals(3, (int)json.deserialize(JSONDeserialization.integer, json.toArray(obj.get("c"))[0]).right.get());
+    }
+    
+    @Test
+    public void viewsAreSerializedWithoutTheirParent() throws Exception {
+        StringBuilder sb = new StringBuilder("[\"x\"");
+        for (int i = 0; i < 10000; ++i) {
+            sb.append(", ").append(i);
+        }
+        JSONStr element = json.toArray(new JSONStr(sb.append("]")))[0];
+        for (JSONStr view: newList(element, new JSONStr(element.subSequence(0, element.length())))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(view);
+            out.close();
+            assertTrue(bytes.size() < 1000);
+            JSONStr copy = (JSONStr) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertEquals(view, copy);
+            assertEquals(view.hashCode(), copy.hashCode());
+        }
+    }
+    
+    @Test
+    public void jsonStrToleratesNull() {
+        assertEquals(new JSONStr(null), new JSONStr(null));
+        assertEquals(31, new JSONStr(null).hashCode());
+        assertTrue(!new JSONStr(null).equals(new JSONStr("")));
+        assertTrue(!new JSONStr("").equals(new JSONStr(null)));
+    }
+    
+    @Test
+    public void jsonStrEqualityIsByContent() {
+        JSONStr whole = new JSONStr("[1,2]");
+        JSONStr view = new JSONStr("x[1,2]", 1, 5);
+        JSONStr builder = new JSONStr(new StringBuilder("[1,2]"));
+        assertEquals(whole, view);
+        assertEquals(view, builder);
+        assertEquals(whole.hashCode(), view.hashCode());
+        assertEquals(whole.hashCode(), builder.hashCode());
+        assertEquals(31 + "[1,2]".hashCode(), whole.hashCode());
+        assertTrue(!whole.equals(new JSONStr("x[1,2]", 0, 5)));
+    }
+    
+    @Test
+    public void nestedValuesAreSplitFromTheRootIndex() {
+        JSONStr[] arr = json.toArray(new JSONStr("[1, {\"a\": [[], {\"b\": \"c\\\"\", \"b\": [true]}]}]"));
+        JSONStr[] a = json.toArray(json.toMap(arr[1]).get("a"));
+        assertEquals(0, json.toArray(a[0]).length);
+        Map<String, JSONStr> b = json.toMap(a[1]);
+        assertEquals("[b]", b.keySet().toString());
+        assertEquals("[true]", b.get("b").toString());
+        assertEquals("true", json.toArray(b.get("b"))[0].toString());
+        // an equal value outside the index
+        assertEquals("[true]", json.toArray(new JSONStr("[[true]]"))[0].toString());
+        try {
+            json.toMap(arr[0]);
+            throw new AssertionError("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("position"));
+        }
+    }
+    
+    @Test
+    public void keyOrderIsPreserved() {
+        assertEquals("[b, a]", json.toMap(new JSONStr("{\"b\":1,\"a\":2}")).keySet().toString());
+    }
+    
+    @Test
+    public void invalidSyntax() {
+        for (String s: new String[]{"[1,]", "[1 2]", "{\"a\" 1}", "\"abc", "01", "[tru]", "[1] x"}) {
+            try {
+                json.toArray(new JSONStr(s));
+                throw new AssertionError("should have failed: " + s);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("position"));
+            }
+        }
+    }
+    
+    @Test
+    public void pullReader() {
+        JSONReader r = json.reader(new JSONStr("{\"a\": [1, true], \"b\": null, \"c\": {\"d\": \"e\"}}")).get();
+        r.beginObject();
+        assertEquals("a", r.nextName());
+        r.beginArray();
+        assertEquals(1.0, r.nextDouble(), 0);
+        assertEquals(JSONReader.Token.BOOLEAN, r.peek());
+        assertTrue(r.nextBoolean());
+        assertTrue(!r.hasNext());
+        r.endArray();
+        assertEquals("b", r.nextName());
+        r.nextNull();
+        assertEquals("c", r.nextName());
+        r.skipValue();
+        assertTrue(!r.hasNext());
+        r.endObject();
+        r.endDocument();
+    }
+    
+    @Test
+    public void readerContinuesAfterFailedValue() {
+        JSONStr s = new JSONStr("[1, \"x\", [2], 3]");
+        Either<Failure<List<Integer>>, List<Integer>> streamed = json.deserialize(JSONSD.list(JSONSD.integer), s);
+        Either<Failure<List<Integer>>, List<Integer>> tree = JSONSD.list(JSONSD.integer).deserialize(json, s);
+        assertEquals("[1, null, null, 3]", streamed.left.get().partialResult.toString());
+        assertEquals(tree.left.get().partialResult, streamed.left.get().partialResult);
+        assertEquals(size(tree.left.get().errors), size(streamed.left.get().errors));
+    }
+    
+    @Test
+    public void iterationEndsAtMalformedInput() throws Exception {
+        Iterator<Either<Failure<Integer>, Integer>> it = json.iterate(JSONSD.integer, new ByteArrayInputStream("[1, 2 3]".getBytes("UTF-8")));
+        assertEquals(1, (int)it.next().right.get());
+        assertEquals(2, (int)it.next().right.get());
+        assertTrue(it.next().isLeft());
+        assertTrue(!it.hasNext());
+    }
+    
+    @Test
+    public void namesAreMatchedFromInput() {
+        JSONNames names = new JSONNames("employees", "name", "a", "b", "c", "d", "e", "f", "g", "h");
+        JSONReader in = json.reader(new JSONStr("{\"n\\u0061me\": 1, \"unknown\": [1, {\"name\": 2}], \"h\": 3, \"\": 4}")).get();
+        in.beginObject();
+        assertEquals(1, in.nextName(names));
+        in.skipValue();
+        assertEquals(-1, in.nextName(names));
+        in.skipValue();
+        assertEquals(9, in.nextName(names));
+        in.skipValue();
+        assertEquals(-1, in.nextName(names));
+        in.skipValue();
+        in.endObject();
+        
+        DepartmentDto dto = json.deserialize(departmentDto, new JSONStr("{\"extra\": {\"name\": \"x\"}, \"n\\u0061me\": \"dep\", \"employees\": []}")).right.get();
+        assertEquals("dep", dto.name);
+    }
+    
+    @Test
+    public void duplicateNamesAreRejected() {
+        try {
+            new JSONNames("a", "b", "a");
+            throw new AssertionError("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("a"));
+        }
+        try {
+            Serializer<JSON,String,JSONStr> string = JSONSD.string;
+            JSONSerialization.object(Util.field(DepartmentDto_.$Fields()._2, string), Util.field(DepartmentDto_.$Fields()._2, string));
+            throw new AssertionError("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("name"));
+        }
+        JSONSerializer<DepartmentDto> nameFirst = JSONSerialization.object(
+            Util.field(DepartmentDto_.$Fields()._2, (Serializer<JSON,String,JSONStr>) JSONSD.string),
+            Util.field(DepartmentDto_.$Fields()._1, (Serializer<JSON,Set<EmployeeDto<Boolean>>,JSONStr>) JSONSD.set(employeeDto)));
+        assertEquals("{\"name\":\"dep\",\"employees\":[]}", nameFirst.serialize(json, new DepartmentDto(Collections.<EmployeeDto<Boolean>>emptySet(), "dep")).toString());
+        FieldDeserializer<JSON,Object,Integer,JSONStr> field = Util.field("a", JSONSD.integer);
+        try {
+            JSONDeserialization.objectUnsafe(newList(field, field), null);
+            throw new AssertionError("should have failed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -1,26 +1,64 @@
 package fi.solita.utils.serialization;
 
+import static fi.solita.utils.functional.Collections.newList;
 import static fi.solita.utils.functional.Collections.newSet;
 import static fi.solita.utils.functional.Functional.size;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
 import fi.solita.utils.functional.Either;
 import fi.solita.utils.functional.Function4;
+import fi.solita.utils.functional.Pair;
 import fi.solita.utils.serialization.Deserializer.Failure;
 import fi.solita.utils.serialization.EmployeeDto.Salary;
 import fi.solita.utils.serialization.impl.JSONorgImplementation;
+import fi.solita.utils.serialization.impl.NativeJSONImplementation;
 import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONBytes;
+import fi.solita.utils.serialization.json.JSONBytesSD;
 import fi.solita.utils.serialization.json.JSONDeserializer;
+import fi.solita.utils.serialization.json.JSONNames;
 import fi.solita.utils.serialization.json.JSONSD;
+import fi.solita.utils.serialization.json.JSONSerialization;
 import fi.solita.utils.serialization.json.JSONSerializer;
 import fi.solita.utils.serialization.json.JSONStr;
+import fi.solita.utils.serialization.json.JSONUTF8;
+import fi.solita.utils.serialization.json.NDJSON;
 
 public class SerializationTest {
     
-    static final JSON json = new JSONorgImplementation();
+    final JSON json = json();
+    
+    protected JSON json() {
+        return new JSONorgImplementation();
+    }
     
     // more complex case, with an inline serializer and a custom constructor function.
     static final JSONSD<EmployeeDto<Boolean>> employeeDto = JSONSD.object(
@@ -71,6 +109,172 @@ public class SerializationTest {
         assertEquals(json.serialize(departmentDto, dto), json.serialize(departmentDto, json.deserialize(departmentDto, json.serialize(departmentDto, dto)).right.get()));
     }
 	
+	@Test
+    public void enumConstantsAreEncodedOncePerFormat() {
+        SD<JSON,TimeUnit,JSONStr> sd = JSONSD.Enum(TimeUnit.class);
+        JSONStr s = json.serialize(JSONSD.list(sd), newList(TimeUnit.SECONDS, TimeUnit.DAYS));
+        assertEquals("[\"SECONDS\",\"DAYS\"]", s.toString());
+        assertEquals(newList(TimeUnit.SECONDS, TimeUnit.DAYS), json.deserialize(JSONSD.list(sd), s).right.get());
+        assertEquals("\"DAYS\"", new NativeJSONImplementation().serialize(sd, TimeUnit.DAYS).toString());
+        assertEquals("\"DAYS\"", json.serialize(sd, TimeUnit.DAYS).toString());
+        assertTrue(json.deserialize(sd, new JSONStr("\"WEEKS\"")).isLeft());
+    }
+	
+	@Test
+    public void jsonOrgLeniencyIsKeptForScannedValues() {
+        JSON org = new JSONorgImplementation();
+        assertEquals("a", org.toString(new JSONStr("'a'")));
+        assertEquals(1, org.toLong(new JSONStr("1.")));
+        assertEquals(1.0, org.toDouble(new JSONStr("1.")), 0);
+        assertEquals(1.0, org.toFloat(new JSONStr("1.")), 0);
+        assertEquals(1, org.deserialize(JSONSD.integer, new JSONStr("1.")).right.get().intValue());
+        assertEquals(1.0, org.deserialize(JSONSD.dbl, new JSONStr("1.")).right.get(), 0);
+    }
+    
+	@Test
+    public void sdsAreJavaSerializable() throws Exception {
+        SD<JSON,List<TimeUnit>,JSONStr> enums = JSONSD.list(JSONSD.Enum(TimeUnit.class));
+        JSONSD<DepartmentDto> generated = DepartmentDtoJSONSD.of(JSONSD.set(EmployeeDtoJSONSD.of(JSONSD.bool)));
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(42, "emp", true)), "dep");
+        // encode the names once before serializing
+        JSONStr s = json.serialize(generated, dto);
+        JSONStr e = json.serialize(enums, newList(TimeUnit.DAYS));
+        
+        assertEquals(s, json.serialize(roundTrip(generated), json.deserialize(roundTrip(generated), s).right.get()));
+        assertEquals(e, json.serialize(roundTrip(enums), json.deserialize(roundTrip(enums), e).right.get()));
+        JSONStr d = json.serialize(departmentDto, dto);
+        assertEquals(d, json.serialize(roundTrip(departmentDto), json.deserialize(roundTrip(departmentDto), d).right.get()));
+        JSONNames names = roundTrip(new JSONNames("a", "b"));
+        assertEquals(1, names.indexOf("b"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+    
+	@Test
+    public void integersAreWrittenWithoutBoxing() throws Exception {
+        List<Long> longs = newList(0l, 7l, -7l, 10l, 99l, 100l, -100l, Long.MAX_VALUE, Long.MIN_VALUE, (long)Integer.MAX_VALUE + 1, (long)Integer.MIN_VALUE - 1, 1000000000000000000l);
+        StringWriter out = new StringWriter();
+        json.serialize(JSONSD.list(JSONSD.lng), longs, out);
+        assertEquals(longs.toString().replace(" ", ""), out.toString());
+        for (Long l: longs) {
+            assertEquals(l.toString(), json.serialize(JSONSD.lng, l).toString());
+        }
+        assertEquals("[-2147483648,2147483647]", json.serialize(JSONSD.pair(JSONSD.integer, JSONSD.integer), Pair.of(Integer.MIN_VALUE, Integer.MAX_VALUE)).toString());
+        assertEquals("-32768", json.serialize(JSONSD.shrt, Short.MIN_VALUE).toString());
+        assertEquals("[true,1.5]", json.serialize(JSONSD.pair(JSONSD.bool, JSONSD.dbl), Pair.of(true, 1.5)).toString());
+    }
+    
+	@Test
+    public void integersOutOfRangeAreFailures() throws Exception {
+        assertEquals(Long.MIN_VALUE, (long)json.deserialize(JSONSD.lng, new JSONStr("-9223372036854775808")).right.get());
+        assertEquals(Long.MAX_VALUE, (long)json.deserialize(JSONSD.lng, new JSONStr("9223372036854775807")).right.get());
+        assertTrue(json.deserialize(JSONSD.lng, new JSONStr("9223372036854775808")).isLeft());
+        assertTrue(json.deserialize(JSONSD.lng, new JSONStr("-92233720368547758080")).isLeft());
+        assertTrue(json.deserialize(JSONSD.integer, new JSONStr("2147483648")).isLeft());
+        assertTrue(json.deserialize(JSONSD.shrt, new JSONStr("32768")).isLeft());
+        assertEquals(-32768, (short)json.deserialize(JSONSD.shrt, new JSONStr("-32768")).right.get());
+        assertEquals(1000, (int)json.deserialize(JSONSD.integer, new JSONStr("1e3")).right.get());
+        assertEquals(1, (int)json.deserialize(JSONSD.integer, new JSONStr("1.9")).right.get());
+        assertEquals(-1, (long)json.deserialize(JSONSD.lng, new JSONStr("-1.9")).right.get());
+        
+        Iterator<Either<Failure<Integer>, Integer>> it = json.iterate(JSONSD.integer, new StringReader("[1, 99999999999, 3]"));
+        assertEquals(1, (int)it.next().right.get());
+        assertTrue(it.next().isLeft());
+        assertEquals(3, (int)it.next().right.get());
+        assertTrue(!it.hasNext());
+    }
+    
+	@Test(timeout = 5000)
+    public void hugeExponentsFailFast() throws Exception {
+        assertTrue(json.deserialize(JSONSD.lng, new JSONStr("1e100000000")).isLeft());
+        assertTrue(json.deserialize(JSONSD.lng, new JSONStr("-1e100000000")).isLeft());
+        assertTrue(json.deserialize(JSONSD.integer, new JSONStr("1e100000000")).isLeft());
+        assertEquals(0, (long)json.deserialize(JSONSD.lng, new JSONStr("1e-100000000")).right.get());
+    }
+    
+	@Test
+    public void doublesAreWrittenAsShortestDecimals() throws Exception {
+        List<Double> doubles = newList(0.1, 100.0, 1e7, 1e-4, 0.002, -1.5, 4.9e-324, Double.MAX_VALUE);
+        StringWriter out = new StringWriter();
+        json.serialize(JSONSD.list(JSONSD.dbl), doubles, out);
+        assertEquals("[0.1,100,1.0E7,1.0E-4,0.002,-1.5,4.9E-324,1.7976931348623157E308]", out.toString());
+        assertEquals(out.toString(), json.serialize(JSONSD.list(JSONSD.dbl), doubles).toString());
+        assertEquals("0.1", json.serialize(JSONSD.flt, 0.1f).toString());
+        assertEquals("[0.1,3.4028235E38]", json.serialize(JSONSD.pair(JSONSD.flt, JSONSD.flt), Pair.of(0.1f, Float.MAX_VALUE)).toString());
+        
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; ++i) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                assertEquals(d, json.deserialize(JSONSD.dbl, json.serialize(JSONSD.dbl, d)).right.get(), 0);
+            }
+        }
+    }
+    
+	@Test
+    public void decimalsAreParsedCorrectlyRounded() throws Exception {
+        for (String d: newList("0.1", "-1.5e-7", "1", "9007199254740993", "1.7976931348623157e308", "4.9e-324", "2.2250738585072011e-308", "123456789012345678901234567890e-20", "9.9999999999999999e22")) {
+            assertEquals(Double.parseDouble(d), json.deserialize(JSONSD.dbl, new JSONStr(d)).right.get(), 0);
+            assertEquals(Float.parseFloat(d), json.deserialize(JSONSD.flt, new JSONStr(d)).right.get(), 0);
+        }
+        // rounding to a double first would land halfway between two floats
+        assertEquals(1.0000001f, json.deserialize(JSONSD.flt, new JSONStr("1.000000059604644775390625001")).right.get(), 0);
+        
+        Iterator<Either<Failure<Float>, Float>> it = json.iterate(JSONSD.flt, new StringReader("[0.1, 1.000000059604644775390625001]"));
+        assertEquals(0.1f, it.next().right.get(), 0);
+        assertEquals(1.0000001f, it.next().right.get(), 0);
+    }
+    
+	@Test
+    public void stringsRoundTripWithEscapes() throws Exception {
+        List<String> strings = newList("", "plain", "quote\" and \\ back", "</script>", "tab\tnew\nline\u0000", "\u2028\u00e4\u20ac\ud83d\ude00");
+        StringWriter out = new StringWriter();
+        json.serialize(JSONSD.list(JSONSD.string), strings, out);
+        assertEquals(strings, json.deserialize(JSONSD.list(JSONSD.string), new JSONStr(out.toString())).right.get());
+        for (String s: strings) {
+            assertEquals(s, json.deserialize(JSONSD.string, json.serialize(JSONSD.string, s)).right.get());
+        }
+        assertEquals("\"a\\\"b\\u0001\"", json.serialize(JSONSD.string, "a\"b\u0001").toString());
+        assertEquals("a\nb\u00e4/", json.deserialize(JSONSD.string, new JSONStr("\"a\\nb\\u00E4\\/\"")).right.get());
+    }
+    
+	@Test
+    public void childrenAreViewsToTheInputAsIs() {
+        JSONStr[] arr = json.toArray(new JSONStr("[{\"b\": 1.50, \"a\": [1e2, 'x']}, -0]"));
+        assertEquals("{\"b\": 1.50, \"a\": [1e2, 'x']}", arr[0].toString());
+        assertEquals(new JSONStr("-0"), arr[1]);
+        assertEquals(new JSONStr("-0").hashCode(), arr[1].hashCode());
+        
+        Map<String, JSONStr> obj = json.toMap(arr[0]);
+        assertEquals(newList("b", "a"), newList(obj.keySet()));
+        assertEquals("1.50", obj.get("b").toString());
+        assertEquals("'x'", json.toArray(obj.get("a"))[1].toString());
+        assertEquals(new JSONStr("1e2"), new JSONStr("[1e2]").slice(1, 4));
+    }
+    
+	@Test
+    public void unknownMembersAreSkipped() {
+        JSONStr[] values = json.toMembers(new JSONStr("{\"blob\": {\"x\": [\"\\u00e4\\\"\", 1e9]}, \"n\\u0061me\": \"dep\", \"employees\": [], \"blob\": null}"), new JSONNames("name", "missing", "employees"));
+        assertEquals("\"dep\"", values[0].toString());
+        assertEquals(null, values[1]);
+        assertEquals("[]", values[2].toString());
+        
+        JSONStr dep = new JSONStr("{\"extra\": [{\"a\": \"\\\\\"}], \"employees\": [{\"age\": 1}], \"name\": \"dep\", \"more\": 1}");
+        for (JSONSD<DepartmentDto> sd: newList(departmentDto, DepartmentDtoJSONSD.of(JSONSD.set(EmployeeDtoJSONSD.of(JSONSD.bool))))) {
+            Either<Failure<DepartmentDto>, DepartmentDto> res = sd.deserialize(json, dep);
+            assertEquals("dep", res.left.get().partialResult.name);
+            assertTrue(sd.deserialize(json, new JSONStr("{\"extra\": [}, \"employees\": [], \"name\": \"dep\"}")).isLeft());
+            assertEquals("dep", sd.deserialize(json, new JSONStr("{\"extra\": {}, \"employees\": [], \"name\": \"dep\"}")).right.get().name);
+        }
+    }
+    
 	@Test
     public void jsonSyntaxFailure() {
         Either<Failure<DepartmentDto>, DepartmentDto> res = json.deserialize(departmentDto, new JSONStr("{'name': 'foo', 'employees': [{'a':1}}"));
@@ -86,4 +290,312 @@ public class SerializationTest {
         assertEquals(newSet(null, null, null), res.left.get().partialResult.employees);
         assertEquals(4+1, size(res.left.get().errors));
     }
+	
+	@Test
+    public void missingKeyFailuresTellWhere() throws Exception {
+        JSONSD<DepartmentDto> generated = DepartmentDtoJSONSD.of(JSONSD.set(EmployeeDtoJSONSD.of(JSONSD.bool)));
+        String missing = "  {\"name\": \"dep\"}";
+        String expected = ".*Key 'employees' not found from object(: +\\{\"name\": \"dep\"\\}| at position 2).*";
+        for (JSONSD<DepartmentDto> sd: newList(departmentDto, generated)) {
+            assertTrue(errorTypes(json.deserialize(sd, new JSONStr(missing))).toString().matches(expected));
+            assertTrue(errorTypes(json.deserialize(sd, new StringReader(missing))).toString().matches(expected));
+        }
+    }
+	
+	@Test
+    public void serializeToStream() throws Exception {
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(42, "emp", true), new EmployeeDto<Boolean>(7, "\u00e4", false)), "dep");
+        
+        StringWriter writer = new StringWriter();
+        json.serialize(departmentDto, dto, writer);
+        assertEquals(json.serialize(departmentDto, dto).toString(), writer.toString());
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        json.serialize(JSONSD.list(departmentDto), newList(dto, dto), out);
+        assertEquals(json.serialize(JSONSD.list(departmentDto), newList(dto, dto)).toString(), out.toString("UTF-8"));
+    }
+	
+	@Test
+    public void serializeToBytes() throws Exception {
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(42, "\u00e4\u20ac\ud83d\ude00", true)), "dep");
+        JSONUTF8 utf8 = new JSONUTF8(json);
+        JSONBytesSD<DepartmentDto> sd = JSONBytesSD.of(departmentDto);
+        
+        JSONBytes bytes = utf8.serialize(sd, dto);
+        assertEquals(json.serialize(departmentDto, dto).toString(), new String(bytes.toByteArray(), "UTF-8"));
+        assertEquals(json.serialize(departmentDto, dto), json.serialize(departmentDto, utf8.deserialize(sd, bytes).right.get()));
+        
+        for (ByteBuffer buffer: newList(ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024))) {
+            utf8.serialize(sd, dto, buffer);
+            buffer.flip();
+            assertEquals(bytes, JSONBytes.of(buffer));
+            assertEquals(json.serialize(departmentDto, dto), json.serialize(departmentDto, utf8.deserialize(sd, buffer).right.get()));
+        }
+    }
+    
+	@Test
+    public void serializeToTooSmallBufferLeavesPositionUnchanged() throws Exception {
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(42, "\u00e4\u20ac\ud83d\ude00", true)), "dep");
+        JSONUTF8 utf8 = new JSONUTF8(json);
+        JSONBytesSD<DepartmentDto> sd = JSONBytesSD.of(departmentDto);
+        
+        for (ByteBuffer buffer: newList(ByteBuffer.allocate(24), ByteBuffer.allocateDirect(24))) {
+            buffer.position(3);
+            try {
+                utf8.serialize(sd, dto, buffer);
+                fail("expected BufferOverflowException");
+            } catch (BufferOverflowException e) {
+                // expected
+            }
+            assertEquals(3, buffer.position());
+            assertEquals(24, buffer.limit());
+        }
+    }
+	
+	@Test
+    public void deserializeFromStream() throws Exception {
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(7, "\u00e4", false)), "dep");
+        JSONStr s = json.serialize(JSONSD.list(departmentDto), newList(dto, dto));
+        byte[] bytes = s.toString().getBytes("UTF-8");
+        
+        assertEquals(s, json.serialize(JSONSD.list(departmentDto), json.deserialize(JSONSD.list(departmentDto), new ByteArrayInputStream(bytes)).right.get()));
+        assertEquals(s, json.serialize(JSONSD.list(departmentDto), json.deserialize(JSONSD.list(departmentDto), Channels.newChannel(new ByteArrayInputStream(bytes))).right.get()));
+        assertTrue(json.deserialize(JSONSD.list(departmentDto), new StringReader(s.toString().substring(1))).isLeft());
+    }
+	
+	@Test
+    public void iterateArrayElements() throws Exception {
+        Iterator<Either<Failure<Integer>, Integer>> it = json.iterate(JSONSD.integer, new StringReader("[1, \"x\", 3]"));
+        assertEquals(1, (int)it.next().right.get());
+        assertTrue(it.next().isLeft());
+        assertEquals(3, (int)it.next().right.get());
+        assertTrue(!it.hasNext());
+        
+        it = json.iterate(JSONSD.integer, new JSONStr("{}"));
+        assertTrue(it.next().isLeft());
+        assertTrue(!it.hasNext());
+    }
+	
+	@Test
+    public void serializeIteratorIncrementally() throws Exception {
+        final int[] flushes = {0};
+        StringWriter writer = new StringWriter() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        List<Integer> values = newList();
+        for (int i = 0; i < 2500; ++i) {
+            values.add(i);
+        }
+        json.serialize(JSONSerialization.iterator(JSONSD.integer, 1000), values.iterator(), writer);
+        assertEquals(json.serialize(JSONSD.list(JSONSD.integer), values).toString(), writer.toString());
+        assertEquals(2+1, flushes[0]);
+    }
+	
+	@Test
+    public void ndjson() throws Exception {
+        NDJSON ndjson = new NDJSON(json);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ndjson.write(JSONSD.string, newList("a", "b\nc"), out);
+        assertEquals("\"a\"\n\"b\\nc\"\n", out.toString("UTF-8"));
+        
+        byte[] in = "1\r\n\n{2\n  \n3".getBytes("UTF-8");
+        for (Iterator<Pair<Long, Either<Failure<Integer>, Integer>>> it: newList(ndjson.read(JSONSD.integer, new ByteArrayInputStream(in)),
+                                                                                ndjson.read(JSONSD.integer, new StringReader(new String(in, "UTF-8"))))) {
+            Pair<Long, Either<Failure<Integer>, Integer>> first = it.next();
+            assertEquals(1l, (long)first._1);
+            assertEquals(1, (int)first._2.right.get());
+            Pair<Long, Either<Failure<Integer>, Integer>> second = it.next();
+            assertEquals(3l, (long)second._1);
+            assertTrue(second._2.isLeft());
+            Pair<Long, Either<Failure<Integer>, Integer>> third = it.next();
+            assertEquals(5l, (long)third._1);
+            assertEquals(3, (int)third._2.right.get());
+            assertTrue(!it.hasNext());
+        }
+    }
+	
+	@Test
+    public void ndjsonParallel() throws Exception {
+        File file = File.createTempFile("ndjson", ".json");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("1\n\"x\"\n\n33\n444\r\n5".getBytes("UTF-8"));
+        out.close();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (boolean ordered: newList(true, false)) {
+                FileChannel channel = new FileInputStream(file).getChannel();
+                Map<Long, Either<Failure<Integer>, Integer>> results = new TreeMap<Long, Either<Failure<Integer>, Integer>>();
+                for (Iterator<Pair<Long, Either<Failure<Integer>, Integer>>> it = new NDJSON(json).read(JSONSD.integer, channel, executor, ordered, 2); it.hasNext(); ) {
+                    Pair<Long, Either<Failure<Integer>, Integer>> p = it.next();
+                    results.put(p._1, p._2);
+                }
+                channel.close();
+                assertEquals(newList(1l, 2l, 4l, 5l, 6l), newList(results.keySet()));
+                assertTrue(results.get(2l).isLeft());
+                assertEquals(444, (int)results.get(5l).right.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void ndjsonParallelCanBeClosedEarly() throws Exception {
+        File file = File.createTempFile("ndjson", ".json");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        for (int i = 0; i < 1000; ++i) {
+            out.write((i + "\n").getBytes("UTF-8"));
+        }
+        out.close();
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            Iterator<Pair<Long, Either<Failure<Integer>, Integer>>> it = new NDJSON(json).read(JSONSD.integer, channel, executor, true, 4);
+            assertEquals(0, (int)it.next()._2.right.get());
+            ((Closeable) it).close();
+            assertTrue(!it.hasNext());
+            // the remaining chunks never start, so the channel stays open
+            assertTrue(channel.isOpen());
+            
+            try {
+                new NDJSON(json).read(JSONSD.integer, channel, executor, true, Integer.MAX_VALUE - 1);
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            channel.close();
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void ndjsonParallelLinesLongerThanChunks() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300000; ++i) {
+            sb.append((char)('a' + i % 26));
+        }
+        String longString = sb.toString();
+        File file = File.createTempFile("ndjson", ".json");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(("\"" + longString + "\"\n\"x\"\n\"" + longString + "\"").getBytes("UTF-8"));
+        out.close();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            List<String> results = newList();
+            for (Iterator<Pair<Long, Either<Failure<String>, String>>> it = new NDJSON(json).read(JSONSD.string, channel, executor, true, 1000); it.hasNext(); ) {
+                results.add(it.next()._2.right.get());
+            }
+            channel.close();
+            assertEquals(newList(longString, "x", longString), results);
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void parallelListGivesSameResult() throws Exception {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 5000; ++i) {
+            sb.append(i == 0 ? "" : ",").append(i % 1000 == 999 ? "{\"name\": \"broken\"}" : "{\"name\": \"dep" + i + "\", \"employees\": []}");
+        }
+        JSONStr s = new JSONStr(sb.append("]"));
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Either<Failure<List<DepartmentDto>>, List<DepartmentDto>> sequential = json.deserialize(JSONSD.list(departmentDto), s);
+            Either<Failure<List<DepartmentDto>>, List<DepartmentDto>> parallel = json.deserialize(JSONSD.list(departmentDto, executor), s);
+            assertEquals(5000, parallel.left.get().partialResult.size());
+            for (int i = 0; i < 5000; ++i) {
+                assertEquals(sequential.left.get().partialResult.get(i).name, parallel.left.get().partialResult.get(i).name);
+                assertEquals(sequential.left.get().partialResult.get(i).employees, parallel.left.get().partialResult.get(i).employees);
+            }
+            assertEquals(newList(sequential.left.get().errors).toString(), newList(parallel.left.get().errors).toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void parallelSerializationGivesSameResult() throws Exception {
+        List<DepartmentDto> departments = newList();
+        Map<String, DepartmentDto> byName = new LinkedHashMap<String, DepartmentDto>();
+        for (int i = 0; i < 3000; ++i) {
+            DepartmentDto dep = new DepartmentDto(newSet(new EmployeeDto<Boolean>(i, "emp" + i, i % 2 == 0)), "dep" + i);
+            departments.add(dep);
+            byName.put(dep.name, dep);
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(json.serialize(JSONSD.list(departmentDto), departments), json.serialize(JSONSD.list(departmentDto, executor), departments));
+            assertEquals(json.serialize(JSONSerialization.array(departmentDto), departments.toArray(new DepartmentDto[0])),
+                         json.serialize(JSONSerialization.array(departmentDto, executor), departments.toArray(new DepartmentDto[0])));
+            assertEquals(json.serialize(JSONSerialization.map(departmentDto), byName), json.serialize(JSONSerialization.map(departmentDto, executor), byName));
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void parallelMapGivesSameResult() throws Exception {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 5000; ++i) {
+            sb.append(i == 0 ? "" : ",").append("\"k" + i + "\": ").append(i % 1000 == 999 ? "{\"name\": \"broken\"}" : "{\"name\": \"dep" + i + "\", \"employees\": []}");
+        }
+        JSONStr s = new JSONStr(sb.append("}"));
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean viaReader: newList(true, false)) {
+                Either<Failure<Map<String, DepartmentDto>>, Map<String, DepartmentDto>> sequential = viaReader ? json.deserialize(JSONSD.map(departmentDto), s) : JSONSD.map(departmentDto).deserialize(json, s);
+                Either<Failure<Map<String, DepartmentDto>>, Map<String, DepartmentDto>> parallel = viaReader ? json.deserialize(JSONSD.map(departmentDto, executor), s) : JSONSD.map(departmentDto, executor).deserialize(json, s);
+                assertEquals(5000, parallel.left.get().partialResult.size());
+                assertEquals(newList(sequential.left.get().partialResult.keySet()), newList(parallel.left.get().partialResult.keySet()));
+                for (String key: sequential.left.get().partialResult.keySet()) {
+                    assertEquals(sequential.left.get().partialResult.get(key).name, parallel.left.get().partialResult.get(key).name);
+                }
+                assertEquals(newList(sequential.left.get().errors).toString(), newList(parallel.left.get().errors).toString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+	
+	@Test
+    public void generatedSDGivesSameResult() {
+        JSONSD<DepartmentDto> generated = DepartmentDtoJSONSD.of(JSONSD.set(EmployeeDtoJSONSD.of(JSONSD.bool)));
+        DepartmentDto dto = new DepartmentDto(newSet(new EmployeeDto<Boolean>(42, "emp", true)), "dep");
+        
+        JSONStr s = json.serialize(generated, dto);
+        assertEquals("{\"employees\":[{\"age\":42,\"name\":\"emp\",\"something\":true}],\"name\":\"dep\"}", s.toString().replaceAll("\\s", ""));
+        
+        DepartmentDto read = json.deserialize(generated, s).right.get();
+        assertEquals("dep", read.name);
+        assertEquals("emp", read.employees.iterator().next().name);
+        assertEquals(42, read.employees.iterator().next().age);
+        
+        JSONStr broken = new JSONStr("{\"name\": \"dep\", \"employees\": [{\"age\": \"x\", \"name\": \"emp\", \"something\": true, \"salary\": 1}]}");
+        assertEquals(errorTypes(json.deserialize(departmentDto, broken)), errorTypes(json.deserialize(generated, broken)));
+        assertEquals(errorTypes(departmentDto.deserialize(json, broken)), errorTypes(generated.deserialize(json, broken)));
+        assertEquals("dep", json.deserialize(generated, broken).left.get().partialResult.name);
+    }
+    
+    private static List<Object> errorTypes(Either<? extends Failure<?>, ?> result) {
+        List<Object> ret = newList();
+        for (Either<Exception, Object> error: result.left.get().errors) {
+            ret.add(error.isLeft() ? error.left.get().getClass() : error.right.get());
+        }
+        return ret;
+    }
 }
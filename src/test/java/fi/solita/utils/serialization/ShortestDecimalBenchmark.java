@@ -0,0 +1,63 @@
+package fi.solita.utils.serialization;
+
+import java.util.Random;
+
+import org.json.JSONObject;
+
+import fi.solita.utils.serialization.json.ShortestDecimal;
+
+/**
+ * Compares formatting doubles with {@link ShortestDecimal} to {@link JSONObject#valueToString(Object)},
+ * which was used before, and to {@link Double#toString(double)}. Not run as a test, run with:
+ *
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; fi.solita.utils.serialization.ShortestDecimalBenchmark</pre>
+ *
+ * Prints nanoseconds per value for random bit patterns and for values with two decimals, after warming up.
+ */
+public class ShortestDecimalBenchmark {
+    private static final int COUNT = 1 << 16;
+    private static final int PASSES = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        double[] randomBits = new double[COUNT];
+        double[] cents = new double[COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            randomBits[i] = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            cents[i] = random.nextInt(10000000) / 100.0;
+        }
+
+        for (int round = 0; round < 6; ++round) {
+            for (double[] values: new double[][] {randomBits, cents}) {
+                long sink = 0;
+                long t0 = System.nanoTime();
+                for (int p = 0; p < PASSES; ++p) {
+                    for (double v: values) {
+                        sink += ShortestDecimal.toString(v).length();
+                    }
+                }
+                long t1 = System.nanoTime();
+                for (int p = 0; p < PASSES; ++p) {
+                    for (double v: values) {
+                        sink += JSONObject.valueToString(v).length();
+                    }
+                }
+                long t2 = System.nanoTime();
+                for (int p = 0; p < PASSES; ++p) {
+                    for (double v: values) {
+                        sink += Double.toString(v).length();
+                    }
+                }
+                long t3 = System.nanoTime();
+                if (round >= 3) {
+                    System.out.printf("%-11s ShortestDecimal %6.1f ns  valueToString %6.1f ns  Double.toString %6.1f ns  (%d)%n",
+                        values == randomBits ? "random bits" : "cents", perValue(t1 - t0), perValue(t2 - t1), perValue(t3 - t2), sink % 10);
+                }
+            }
+        }
+    }
+
+    private static double perValue(long nanos) {
+        return nanos / (double) PASSES / COUNT;
+    }
+}
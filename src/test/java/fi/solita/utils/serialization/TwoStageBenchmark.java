@@ -0,0 +1,81 @@
+package fi.solita.utils.serialization;
+
+import java.util.Random;
+
+import fi.solita.utils.serialization.impl.NativeJSONImplementation;
+import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONStr;
+
+/**
+ * Compares indexing large inputs in a single pass to the two-stage indexer of
+ * {@link NativeJSONImplementation#NativeJSONImplementation(int)}. Not run as a test, run with:
+ *
+ * <pre>java -cp target/classes:target/test-classes:&lt;dependencies&gt; fi.solita.utils.serialization.TwoStageBenchmark [megabytes]</pre>
+ *
+ * Each corpus is split to its top-level values, which indexes the whole input.
+ * Prints the throughput in MB of chars per second, after warming up.
+ */
+public class TwoStageBenchmark {
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        Random random = new Random(42);
+        JSON singlePass = new NativeJSONImplementation();
+        JSON twoStage = new NativeJSONImplementation(0);
+
+        String[] names = {"records", "long strings", "numbers"};
+        for (int c = 0; c < names.length; ++c) {
+            JSONStr corpus = corpus(c, megabytes << 20, random);
+            for (int round = 0; round < 5; ++round) {
+                double single = throughput(singlePass, corpus);
+                double two = throughput(twoStage, corpus);
+                if (round >= 2) {
+                    System.out.printf("%-12s single pass %6.0f MB/s  two-stage %6.0f MB/s%n", names[c], single, two);
+                }
+            }
+        }
+    }
+
+    private static double throughput(JSON format, JSONStr corpus) {
+        long start = System.nanoTime();
+        int count = 0;
+        for (int i = 0; i < 5; ++i) {
+            count += format.toArray(corpus).length;
+        }
+        long nanos = System.nanoTime() - start;
+        if (count == 0) {
+            throw new IllegalStateException();
+        }
+        return 5.0 * corpus.length() / (1 << 20) / (nanos / 1e9);
+    }
+
+    /**
+     * @return an array of about the given number of chars.
+     */
+    static JSONStr corpus(int kind, int chars, Random random) {
+        StringBuilder sb = new StringBuilder(chars + 1024).append('[');
+        while (sb.length() < chars) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            switch (kind) {
+                case 0:
+                    sb.append("{\"id\": ").append(random.nextInt(1000000))
+                      .append(", \"name\": \"name").append(random.nextInt(1000))
+                      .append("\", \"tags\": [\"a\", \"b\\\"c\"], \"active\": ").append(random.nextBoolean())
+                      .append(", \"score\": ").append(random.nextDouble()).append('}');
+                    break;
+                case 1:
+                    sb.append('"');
+                    for (int i = 0, n = 200 + random.nextInt(800); i < n; ++i) {
+                        sb.append((char) ('a' + random.nextInt(26)));
+                    }
+                    sb.append('"');
+                    break;
+                default:
+                    sb.append(random.nextInt()).append(", ").append(random.nextDouble());
+            }
+        }
+        return new JSONStr(sb.append(']').toString());
+    }
+}
@@ -0,0 +1,42 @@
+package fi.solita.utils.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import fi.solita.utils.serialization.impl.NativeJSONImplementation;
+import fi.solita.utils.serialization.json.JSON;
+import fi.solita.utils.serialization.json.JSONStr;
+
+public class TwoStageJSONImplementationTest extends NativeJSONImplementationTest {
+    
+    @Override
+    protected JSON json() {
+        return new NativeJSONImplementation(0);
+    }
+    
+    @Test
+    public void structuralCharsAreFoundAcrossBlocks() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 100; ++i) {
+            sb.append(i == 0 ? "" : ",").append("{\"k\\\\\\\"").append(i).append("\": \"\\\\\\\\\\\"[,]\\u00e4\", \"n\":\t-1.5e3 }");
+        }
+        JSONStr[] arr = json.toArray(new JSONStr(sb.append("]").toString()));
+        assertEquals(100, arr.length);
+        for (int i = 0; i < 100; ++i) {
+            Map<String, JSONStr> obj = json.toMap(arr[i]);
+            assertEquals("\"\\\\\\\\\\\"[,]\\u00e4\"", obj.get("k\\\"" + i).toString());
+            assertEquals("\\\\\"[,]ä", json.toString(obj.get("k\\\"" + i)));
+            assertEquals(-1500.0, json.toDouble(obj.get("n")), 0);
+        }
+        try {
+            json.toArray(new JSONStr("[\"a\tb\"]"));
+            throw new AssertionError("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("position"));
+        }
+    }
+}
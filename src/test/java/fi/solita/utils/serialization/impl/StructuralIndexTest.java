@@ -0,0 +1,33 @@
+package fi.solita.utils.serialization.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fi.solita.utils.serialization.json.JSONNames;
+import fi.solita.utils.serialization.json.JSONStr;
+
+public class StructuralIndexTest {
+
+    private static StructuralIndex indexOf(JSONStr json) {
+        CharSequence cs = json.subSequence(0, json.length());
+        return cs instanceof CharArraySlice ? ((CharArraySlice) cs).index : null;
+    }
+
+	@Test
+    public void membersOfNestedObjectsAreSplitFromTheRootIndex() {
+        JSONStr root = new JSONStr("{\"skipped\": {\"x\": 0}, \"a\": {\"b\": {\"c\": [1]}}}");
+        JSONStr a = StructuralIndex.toMembers(root, new JSONNames("a"), false, Integer.MAX_VALUE)[0];
+        StructuralIndex index = indexOf(a);
+        assertTrue(index != null);
+
+        JSONStr b = StructuralIndex.toMembers(a, new JSONNames("b"), false, Integer.MAX_VALUE)[0];
+        assertTrue(index == indexOf(b));
+        JSONStr c = StructuralIndex.toMembers(b, new JSONNames("c", "missing"), false, Integer.MAX_VALUE)[0];
+        assertTrue(index == indexOf(c));
+        assertEquals("[1]", c.toString());
+        assertEquals("1", StructuralIndex.toArray(c, Integer.MAX_VALUE)[0].toString());
+        assertTrue(index == indexOf(StructuralIndex.toArray(c, Integer.MAX_VALUE)[0]));
+    }
+}